@@ -0,0 +1,83 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * User.addUserReward, on a new user receiving one reward per attraction,
+ * and on a user already rewarded for every attraction, where concurrent passes only hit the duplicate check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddUserRewardBenchmark {
+
+    @Param({"26", "1000"})
+    public int attractionCount;
+
+    private List<UserReward> userRewards;
+    private User newUser;
+    private User rewardedUser;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Attraction> attractions = BenchmarkFixtures.attractions(attractionCount);
+        rewardedUser = BenchmarkFixtures.user(0, 1);
+        userRewards = new ArrayList<>(attractionCount);
+        for (int i = 0; i < attractionCount; i++) {
+            Attraction attraction = attractions.get(i);
+            userRewards.add(new UserReward(new VisitedLocation(rewardedUser.getUserId(), attraction, new Date(i)),
+                    attraction, i + 1));
+        }
+        userRewards.forEach(rewardedUser::addUserReward);
+    }
+
+    @Setup(Level.Invocation)
+    public void createUser() {
+        newUser = BenchmarkFixtures.user(1, 1);
+    }
+
+    @Benchmark
+    public int addNewRewards() {
+        for (UserReward userReward : userRewards) {
+            newUser.addUserReward(userReward);
+        }
+        return newUser.getRewardPointsTotal();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int addDuplicateRewards() {
+        int added = 0;
+        for (UserReward userReward : userRewards) {
+            if (rewardedUser.addUserReward(userReward)) {
+                added++;
+            }
+        }
+        return added;
+    }
+}
@@ -0,0 +1,97 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.configuration.TourGuideProperties;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.VisitedLocationHistory;
+
+/**
+ * Deterministic data shared by the benchmarks: every fixture is derived from a seed,
+ * so two runs with the same parameters measure the same work.
+ */
+final class BenchmarkFixtures {
+    static final long SEED = 42;
+    // one visited location out of LOCATIONS_PER_VISIT is at an attraction
+    private static final int LOCATIONS_PER_VISIT = 4;
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Generate attractions spread over the globe
+     *
+     * @param count the number of attractions
+     * @return the attractions, named "Attraction 0" to "Attraction count-1"
+     */
+    static List<Attraction> attractions(int count) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<Attraction> attractions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            attractions.add(new Attraction("Attraction " + i, "City " + i, "State " + (i % 50),
+                    latitude(random), longitude(random)));
+        }
+        return attractions;
+    }
+
+    /**
+     * Create a user whose id only depends on its index, so cached reward points can be shared between runs
+     *
+     * @param index         the index of the user
+     * @param historyLength the number of recent locations the user keeps
+     * @return the user, without any location
+     */
+    static User user(int index, int historyLength) {
+        String userName = "benchmarkUser" + index;
+        return new User(new UUID(SEED, index), userName, "000", userName + "@tourGuide.com",
+                new VisitedLocationHistory.Retention(historyLength, 0, 1));
+    }
+
+    /**
+     * Add visited locations to a user, one out of LOCATIONS_PER_VISIT at an attraction
+     *
+     * @param user        the user
+     * @param length      the number of locations to add
+     * @param attractions the attractions visited
+     * @param random      the source of the locations
+     */
+    static void addHistory(User user, int length, List<Attraction> attractions, SplittableRandom random) {
+        for (int i = 0; i < length; i++) {
+            Location location;
+            if (i % LOCATIONS_PER_VISIT == 0) {
+                Attraction attraction = attractions.get(random.nextInt(attractions.size()));
+                location = new Location(attraction.latitude, attraction.longitude);
+            } else {
+                location = new Location(latitude(random), longitude(random));
+            }
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), location, new Date(i)));
+        }
+    }
+
+    /**
+     * Settings keeping the background work out of the measurements: the tracker waits a day between passes
+     *
+     * @return the settings
+     */
+    static TourGuideProperties properties() {
+        TourGuideProperties properties = new TourGuideProperties();
+        properties.getTracking().setPollingInterval(Duration.ofDays(1));
+        return properties;
+    }
+
+    static double latitude(SplittableRandom random) {
+        return random.nextDouble(-85.05112878, 85.05112878);
+    }
+
+    static double longitude(SplittableRandom random) {
+        return random.nextDouble(-180, 180);
+    }
+}
@@ -0,0 +1,91 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.time.Duration;
+import java.util.List;
+
+import gpsUtil.location.Attraction;
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.configuration.ClientLimiters;
+import com.openclassrooms.tourguide.configuration.TourGuideExecutors;
+import com.openclassrooms.tourguide.configuration.TourGuideMetrics;
+import com.openclassrooms.tourguide.configuration.TourGuideProperties;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardPointsCache;
+import com.openclassrooms.tourguide.service.RewardPointsCoalescer;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+
+/**
+ * The services wired as in TourGuideModule, on top of the stub libraries.
+ * The TourGuideService is created on demand, without internal users, and closing releases every thread.
+ */
+final class BenchmarkServices implements AutoCloseable {
+    final StubGpsUtil gpsUtil;
+    final RewardsService rewardsService;
+    final ClientLimiters limiters;
+    private final TourGuideProperties properties;
+    private final TourGuideMetrics metrics;
+    private final TourGuideExecutors executors;
+    private final AttractionCatalog attractionCatalog;
+    private final RewardPointsCoalescer rewardPointsCoalescer;
+    private TourGuideService tourGuideService;
+
+    /**
+     * Constructor
+     *
+     * @param attractions         the attractions of the stub GpsUtil
+     * @param gpsLatencyMicros    the latency of the stub GpsUtil, in microseconds
+     * @param rewardLatencyMicros the latency of the stub RewardCentral, in microseconds
+     */
+    BenchmarkServices(List<Attraction> attractions, long gpsLatencyMicros, long rewardLatencyMicros) {
+        this(new StubGpsUtil(attractions, gpsLatencyMicros), new StubRewardCentral(rewardLatencyMicros),
+                BenchmarkFixtures.properties(), new TourGuideMetrics());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param gpsUtil       the stub GpsUtil
+     * @param rewardCentral the stub RewardCentral
+     * @param properties    the settings of the services
+     * @param metrics       the timers of the hot paths
+     */
+    BenchmarkServices(StubGpsUtil gpsUtil, StubRewardCentral rewardCentral, TourGuideProperties properties,
+                      TourGuideMetrics metrics) {
+        TourGuideProperties.Rewards rewards = properties.getRewards();
+        this.gpsUtil = gpsUtil;
+        this.properties = properties;
+        this.metrics = metrics;
+        executors = new TourGuideExecutors(properties);
+        limiters = new ClientLimiters(properties);
+        attractionCatalog = new AttractionCatalog(gpsUtil, Duration.ZERO);
+        rewardPointsCoalescer = new RewardPointsCoalescer(rewardCentral,
+                limiters.get(ClientLimiters.Client.REWARD_CENTRAL), rewards.getBatchWindow(),
+                executors.get(TourGuideExecutors.Workload.REWARD_LOOKUPS));
+        rewardsService = new RewardsService(attractionCatalog, rewardCentral,
+                new RewardPointsCache(rewardPointsCoalescer::getRewardPoints, rewards.getCacheMaxSize(),
+                        rewards.getCacheTtl()),
+                executors.get(TourGuideExecutors.Workload.REWARDS), metrics);
+        // load the attractions before the measurements
+        attractionCatalog.getSnapshot();
+    }
+
+    TourGuideService tourGuideService() {
+        if (tourGuideService == null) {
+            InternalTestHelper.setInternalUserNumber(0);
+            tourGuideService = new TourGuideService(gpsUtil, rewardsService, executors, properties, metrics,
+                    limiters);
+        }
+        return tourGuideService;
+    }
+
+    @Override
+    public void close() {
+        if (tourGuideService != null) {
+            tourGuideService.shutdown();
+        }
+        rewardPointsCoalescer.close();
+        attractionCatalog.close();
+        executors.close();
+    }
+}
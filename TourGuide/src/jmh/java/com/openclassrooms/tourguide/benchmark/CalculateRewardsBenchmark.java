@@ -0,0 +1,86 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Attraction;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * One reward pass over users whose whole history is new.
+ * The users are recreated before each invocation with the same ids, so after the first pass the reward points
+ * come from the RewardPointsCache, as for a user tracked again; rewardLatencyMicros only weighs on the warmup
+ * unless the cache is too small for userCount * attractionCount entries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculateRewardsBenchmark {
+
+    @Param({"1", "100"})
+    public int userCount;
+
+    @Param({"10", "100", "1000"})
+    public int historyLength;
+
+    @Param({"26", "1000"})
+    public int attractionCount;
+
+    @Param({"0"})
+    public long rewardLatencyMicros;
+
+    private BenchmarkServices services;
+    private List<Attraction> attractions;
+    private List<User> users;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        attractions = BenchmarkFixtures.attractions(attractionCount);
+        services = new BenchmarkServices(attractions, 0, rewardLatencyMicros);
+    }
+
+    @Setup(Level.Invocation)
+    public void createUsers() {
+        SplittableRandom random = new SplittableRandom(BenchmarkFixtures.SEED);
+        users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            User user = BenchmarkFixtures.user(i, historyLength);
+            BenchmarkFixtures.addHistory(user, historyLength, attractions, random);
+            users.add(user);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        services.close();
+    }
+
+    @Benchmark
+    public int calculateRewards() {
+        int rewardCount = 0;
+        for (User user : users) {
+            services.rewardsService.calculateRewards(user);
+            rewardCount += user.getUserRewards().size();
+        }
+        return rewardCount;
+    }
+}
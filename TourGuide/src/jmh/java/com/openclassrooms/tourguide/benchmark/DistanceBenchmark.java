@@ -0,0 +1,74 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import com.openclassrooms.tourguide.attraction.DistanceKernel;
+
+/**
+ * Distances from one location to every attraction:
+ * RewardsService.getDistance against the precomputed DistanceKernel used by the attraction index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+
+    @Param({"26", "1000", "10000"})
+    public int attractionCount;
+
+    private BenchmarkServices services;
+    private List<Attraction> attractions;
+    private DistanceKernel distanceKernel;
+    private Location location;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        attractions = BenchmarkFixtures.attractions(attractionCount);
+        services = new BenchmarkServices(attractions, 0, 0);
+        distanceKernel = new DistanceKernel(attractions);
+        SplittableRandom random = new SplittableRandom(BenchmarkFixtures.SEED);
+        location = new Location(BenchmarkFixtures.latitude(random), BenchmarkFixtures.longitude(random));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        services.close();
+    }
+
+    @Benchmark
+    public void getDistance(Blackhole blackhole) {
+        for (Attraction attraction : attractions) {
+            blackhole.consume(services.rewardsService.getDistance(location, attraction));
+        }
+    }
+
+    @Benchmark
+    public void distanceKernel(Blackhole blackhole) {
+        DistanceKernel.Query query = distanceKernel.query(location.latitude, location.longitude, 0);
+        for (int i = 0; i < distanceKernel.size(); i++) {
+            blackhole.consume(query.distance(i));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.boot.convert.DurationStyle;
+
+/**
+ * Latency and failures of a simulated remote call.
+ * The latency follows a distribution around a typical value, then is spread by a uniform jitter, and a share of
+ * the calls fails. Each call draws from a random seeded by the model seed and a key identifying the call,
+ * so a run repeats the same latencies and failures whatever the scheduling of the threads.
+ */
+final class LatencyModel {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Shape of the latency around its typical value
+     */
+    enum Distribution {
+        // always the typical value
+        FIXED,
+        // exponential, the typical value being the mean: many fast calls, a few long ones
+        EXPONENTIAL,
+        // log-normal, the typical value being the median: the long tail of most remote services
+        LOG_NORMAL;
+
+        /**
+         * Parse a distribution written like "log-normal"
+         *
+         * @param name the name of the distribution, in kebab case
+         * @return the distribution
+         */
+        static Distribution parse(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    private final Distribution distribution;
+    private final long latencyNanos;
+    private final double sigma;
+    private final double jitter;
+    private final double failureRate;
+    private final long seed;
+
+    /**
+     * Constructor
+     *
+     * @param distribution the shape of the latency
+     * @param latency      the typical latency: the value of FIXED, the mean of EXPONENTIAL, the median of LOG_NORMAL
+     * @param sigma        the standard deviation of the logarithm of the latency, for LOG_NORMAL
+     * @param jitter       the latency is multiplied by a uniform factor between 1 - jitter and 1 + jitter
+     * @param failureRate  the share of the calls failing, between 0 and 1
+     * @param seed         the seed of the latencies and failures
+     */
+    LatencyModel(Distribution distribution, Duration latency, double sigma, double jitter, double failureRate,
+                 long seed) {
+        if (latency.isNegative() || sigma < 0 || jitter < 0 || jitter > 1 || failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("Invalid latency model: the latency and sigma must be positive, "
+                    + "the jitter and failure rate between 0 and 1");
+        }
+        this.distribution = distribution;
+        this.latencyNanos = latency.toNanos();
+        this.sigma = sigma;
+        this.jitter = jitter;
+        this.failureRate = failureRate;
+        this.seed = seed;
+    }
+
+    /**
+     * Model of a call always taking the same time and never failing
+     *
+     * @param latency the latency of every call
+     * @return the model
+     */
+    static LatencyModel fixed(Duration latency) {
+        return new LatencyModel(Distribution.FIXED, latency, 0, 0, 0, BenchmarkFixtures.SEED);
+    }
+
+    /**
+     * Key of a call, from the entity it is about and a second discriminant
+     *
+     * @param id           the id of the user or attraction
+     * @param discriminant another id, or the number of calls already made for this id
+     * @return the key of the call
+     */
+    static long callKey(UUID id, long discriminant) {
+        return id.getMostSignificantBits() ^ Long.rotateLeft(id.getLeastSignificantBits(), 32)
+                ^ discriminant * GOLDEN_GAMMA;
+    }
+
+    /**
+     * Simulate a remote call: wait its latency, then fail at the failure rate
+     *
+     * @param clientName the name of the simulated client, used in the failure message
+     * @param callKey    the key of the call, see callKey
+     * @throws IllegalStateException if the call fails
+     */
+    void simulateCall(String clientName, long callKey) {
+        SplittableRandom random = new SplittableRandom(seed ^ callKey);
+        long nanos = nextLatencyNanos(random);
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+        if (failureRate > 0 && random.nextDouble() < failureRate) {
+            throw new IllegalStateException("Simulated " + clientName + " failure");
+        }
+    }
+
+    private long nextLatencyNanos(SplittableRandom random) {
+        double nanos = switch (distribution) {
+            case FIXED -> latencyNanos;
+            case EXPONENTIAL -> -latencyNanos * Math.log(1 - random.nextDouble());
+            case LOG_NORMAL -> latencyNanos * Math.exp(sigma * random.nextGaussian());
+        };
+        if (jitter > 0) {
+            nanos *= 1 + jitter * (2 * random.nextDouble() - 1);
+        }
+        return (long) nanos;
+    }
+
+    @Override
+    public String toString() {
+        String shape = distribution.name().toLowerCase(Locale.ROOT).replace('_', '-') + " "
+                + DurationStyle.SIMPLE.print(Duration.ofNanos(latencyNanos), ChronoUnit.MICROS);
+        if (distribution == Distribution.LOG_NORMAL) {
+            shape += ", sigma " + sigma;
+        }
+        return shape + ", jitter " + jitter + ", failure rate " + failureRate;
+    }
+}
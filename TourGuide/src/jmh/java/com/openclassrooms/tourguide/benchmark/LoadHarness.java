@@ -0,0 +1,236 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import gpsUtil.location.Attraction;
+import com.openclassrooms.tourguide.configuration.AdaptiveConcurrencyLimiter;
+import com.openclassrooms.tourguide.configuration.ClientLimiters;
+import com.openclassrooms.tourguide.configuration.TourGuideMetrics;
+import com.openclassrooms.tourguide.configuration.TourGuideProperties;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.tracker.TrackerMetrics;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Load test of the tracking flow: a Tracker runs passes over generated users, each location feeding the reward
+ * pipeline, with gpsUtil and RewardCentral replaced by stubs following a latency model.
+ * Once the passes are over and the rewards calculated, the harness prints the throughput, the latency percentiles
+ * of trackUserLocation, calculateRewards and getRewardPoints, the tracker lag and the client limits.
+ * Settings are passed as key=value arguments, see Settings:
+ * mvn -Pbenchmark test-compile exec:exec@load -Dload.args="users=10000 gps.latency=5ms gps.failure-rate=0.001"
+ */
+public final class LoadHarness {
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(10);
+    private static final long POLL_MILLIS = 50;
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Settings settings = Settings.parse(args);
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(settings.logLevel());
+        run(settings);
+    }
+
+    /**
+     * Run the passes and print the report
+     *
+     * @param settings the load to generate
+     */
+    static void run(Settings settings) throws InterruptedException {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                // percentiles over the whole run, instead of the last few minutes
+                return DistributionStatisticConfig.builder().expiry(Duration.ofDays(1)).bufferLength(1).build()
+                        .merge(config);
+            }
+        });
+        TourGuideMetrics metrics = new TourGuideMetrics(registry);
+        TourGuideProperties properties = BenchmarkFixtures.properties();
+        properties.getExecution().setVirtualThreads(settings.virtualThreads());
+        List<Attraction> attractions = BenchmarkFixtures.attractions(settings.attractions());
+
+        System.out.println("Load run: " + settings.users() + " users with " + settings.history()
+                + " locations of history, " + settings.attractions() + " attractions, " + settings.passes()
+                + " passes every " + DurationStyle.SIMPLE.print(settings.pollingInterval()) + " in " + settings.shards() + " shards");
+        System.out.println("gpsUtil: " + settings.gpsLatency());
+        System.out.println("rewardCentral: " + settings.rewardLatency());
+
+        ExecutorService trackerExecutor = Executors.newSingleThreadExecutor();
+        try (BenchmarkServices services = new BenchmarkServices(new StubGpsUtil(attractions, settings.gpsLatency()),
+                new StubRewardCentral(settings.rewardLatency()), properties, metrics)) {
+            TourGuideService tourGuideService = services.tourGuideService();
+            // the tracker of the service waits a day between passes: the harness paces its own
+            tourGuideService.tracker.stopTracking();
+            SplittableRandom random = new SplittableRandom(settings.seed());
+            for (int i = 0; i < settings.users(); i++) {
+                User user = BenchmarkFixtures.user(i, settings.history());
+                BenchmarkFixtures.addHistory(user, settings.history(), attractions, random);
+                tourGuideService.addUser(user);
+            }
+
+            long start = System.nanoTime();
+            Tracker tracker = new Tracker(tourGuideService, trackerExecutor, settings.pollingInterval(),
+                    settings.shards());
+            while (tracker.getMetrics().getPasses() < settings.passes()) {
+                TimeUnit.MILLISECONDS.sleep(POLL_MILLIS);
+            }
+            tracker.stopTracking();
+            if (!tourGuideService.getRewardPipeline().awaitIdle(IDLE_TIMEOUT)) {
+                throw new IllegalStateException("Reward pipeline still busy after " + IDLE_TIMEOUT);
+            }
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+            report(elapsed, tracker.getMetrics(), registry, services.limiters);
+        } finally {
+            trackerExecutor.shutdownNow();
+        }
+    }
+
+    private static void report(Duration elapsed, TrackerMetrics trackerMetrics, MeterRegistry registry,
+                               ClientLimiters limiters) {
+        double seconds = elapsed.toNanos() / 1e9;
+        System.out.printf(Locale.ROOT, "Elapsed: %.1f s%n", seconds);
+        // the next pass may have started before the tracker stopped: its users are counted too
+        System.out.printf(Locale.ROOT, "Tracked users: %d in %d complete passes, %.1f per second%n",
+                trackerMetrics.getTrackedUsers(), trackerMetrics.getPasses(),
+                trackerMetrics.getTrackedUsers() / seconds);
+        for (TourGuideMetrics.Operation operation : List.of(TourGuideMetrics.Operation.TRACK_USER_LOCATION,
+                TourGuideMetrics.Operation.CALCULATE_REWARDS, TourGuideMetrics.Operation.GET_REWARD_POINTS)) {
+            System.out.println(operation.getTagValue() + ": " + describe(registry, operation, seconds));
+        }
+        System.out.println("Tracker: max lag " + trackerMetrics.getMaxLagMillis() + " ms, "
+                + trackerMetrics.getOverruns() + " shard overruns, last pass "
+                + trackerMetrics.getLastPassDurationMillis() + " ms");
+        for (ClientLimiters.Client client : ClientLimiters.Client.values()) {
+            AdaptiveConcurrencyLimiter limiter = limiters.get(client);
+            System.out.println("Client " + client.getClientName() + ": limit " + limiter.getLimit() + ", "
+                    + limiter.getRejectionCount() + " rejections");
+        }
+    }
+
+    private static String describe(MeterRegistry registry, TourGuideMetrics.Operation operation, double seconds) {
+        Timer success = timer(registry, operation, "success");
+        Timer error = timer(registry, operation, "error");
+        long errors = error == null ? 0 : error.count();
+        if (success == null || success.count() == 0) {
+            return "no successful call, " + errors + " errors";
+        }
+        HistogramSnapshot snapshot = success.takeSnapshot();
+        StringBuilder description = new StringBuilder(String.format(Locale.ROOT, "%d calls, %.1f per second, "
+                + "%d errors", snapshot.count(), snapshot.count() / seconds, errors));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            description.append(String.format(Locale.ROOT, ", p%.0f %.2f ms", percentile.percentile() * 100,
+                    percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        return description.append(String.format(Locale.ROOT, ", max %.2f ms", snapshot.max(TimeUnit.MILLISECONDS)))
+                .toString();
+    }
+
+    private static Timer timer(MeterRegistry registry, TourGuideMetrics.Operation operation, String outcome) {
+        return registry.find(TourGuideMetrics.DURATION)
+                .tag("operation", operation.getTagValue())
+                .tag("outcome", outcome)
+                .timer();
+    }
+
+    /**
+     * Load to generate
+     *
+     * @param users           the number of users, "users" (default 1000)
+     * @param history         the locations each user keeps and starts with, "history" (default 100)
+     * @param attractions     the number of attractions, "attractions" (default 26)
+     * @param passes          the number of tracking passes, "passes" (default 3)
+     * @param pollingInterval the time between two passes, "polling-interval" (default 0: passes run back to back)
+     * @param shards          the number of shards of a pass, "shards" (default 10)
+     * @param virtualThreads  run the tracking and reward lookups on virtual threads, "virtual-threads" (default false)
+     * @param seed            the seed of the histories and of the latency models, "seed" (default 42)
+     * @param gpsLatency      the latency model of gpsUtil, "gps.*"
+     * @param rewardLatency   the latency model of RewardCentral, "reward.*"
+     * @param logLevel        the level of the application logs, "log-level" (default error)
+     */
+    record Settings(int users, int history, int attractions, int passes, Duration pollingInterval, int shards,
+                    boolean virtualThreads, long seed, LatencyModel gpsLatency, LatencyModel rewardLatency,
+                    Level logLevel) {
+
+        /**
+         * Parse the key=value arguments of the harness.
+         * A latency model is set by "distribution" (fixed, exponential or log-normal), "latency", "sigma",
+         * "jitter" and "failure-rate", prefixed by "gps." or "reward.". By default gpsUtil answers in a log-normal
+         * 1ms and RewardCentral in a log-normal 100us, with a sigma of 0.5 and neither jitter nor failures.
+         *
+         * @param args the arguments
+         * @return the settings
+         * @throws IllegalArgumentException on an unknown key or a malformed argument
+         */
+        static Settings parse(String[] args) {
+            Map<String, String> values = new LinkedHashMap<>();
+            values.put("users", "1000");
+            values.put("history", "100");
+            values.put("attractions", "26");
+            values.put("passes", "3");
+            values.put("polling-interval", "0s");
+            values.put("shards", "10");
+            values.put("virtual-threads", "false");
+            values.put("seed", String.valueOf(BenchmarkFixtures.SEED));
+            putLatencyDefaults(values, "gps.", "1ms");
+            putLatencyDefaults(values, "reward.", "100us");
+            values.put("log-level", "error");
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                if (separator < 0 || !values.containsKey(arg.substring(0, separator))) {
+                    throw new IllegalArgumentException("Unknown argument " + arg + ", expected key=value with key in "
+                            + values.keySet());
+                }
+                values.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+
+            long seed = Long.parseLong(values.get("seed"));
+            return new Settings(Integer.parseInt(values.get("users")), Integer.parseInt(values.get("history")),
+                    Integer.parseInt(values.get("attractions")), Integer.parseInt(values.get("passes")),
+                    DurationStyle.detectAndParse(values.get("polling-interval")),
+                    Integer.parseInt(values.get("shards")), Boolean.parseBoolean(values.get("virtual-threads")),
+                    seed, latencyModel(values, "gps.", seed), latencyModel(values, "reward.", seed + 1),
+                    Level.toLevel(values.get("log-level")));
+        }
+
+        private static void putLatencyDefaults(Map<String, String> values, String prefix, String latency) {
+            values.put(prefix + "distribution", "log-normal");
+            values.put(prefix + "latency", latency);
+            values.put(prefix + "sigma", "0.5");
+            values.put(prefix + "jitter", "0");
+            values.put(prefix + "failure-rate", "0");
+        }
+
+        private static LatencyModel latencyModel(Map<String, String> values, String prefix, long seed) {
+            return new LatencyModel(LatencyModel.Distribution.parse(values.get(prefix + "distribution")),
+                    DurationStyle.detectAndParse(values.get(prefix + "latency")),
+                    Double.parseDouble(values.get(prefix + "sigma")), Double.parseDouble(values.get(prefix + "jitter")),
+                    Double.parseDouble(values.get(prefix + "failure-rate")), seed);
+        }
+    }
+}
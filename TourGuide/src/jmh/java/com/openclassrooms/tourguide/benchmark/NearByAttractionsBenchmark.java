@@ -0,0 +1,77 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.dto.NearByAttractionsDto;
+import com.openclassrooms.tourguide.service.TourGuideService;
+
+/**
+ * The five nearest attractions of a location with their reward points, cycling over userCount users
+ * at fixed random locations, so the points are cached once every user has been seen.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NearByAttractionsBenchmark {
+
+    @Param({"100", "10000"})
+    public int userCount;
+
+    @Param({"26", "1000", "10000"})
+    public int attractionCount;
+
+    @Param({"0"})
+    public long rewardLatencyMicros;
+
+    private BenchmarkServices services;
+    private TourGuideService tourGuideService;
+    private VisitedLocation[] visitedLocations;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        services = new BenchmarkServices(BenchmarkFixtures.attractions(attractionCount), 0, rewardLatencyMicros);
+        tourGuideService = services.tourGuideService();
+        SplittableRandom random = new SplittableRandom(BenchmarkFixtures.SEED);
+        visitedLocations = new VisitedLocation[userCount];
+        for (int i = 0; i < userCount; i++) {
+            visitedLocations[i] = new VisitedLocation(new UUID(BenchmarkFixtures.SEED, i),
+                    new Location(BenchmarkFixtures.latitude(random), BenchmarkFixtures.longitude(random)), new Date());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        services.close();
+    }
+
+    @Benchmark
+    public List<NearByAttractionsDto> getNearByAttractions() {
+        VisitedLocation visitedLocation = visitedLocations[next];
+        next = (next + 1) % visitedLocations.length;
+        return tourGuideService.getNearByAttractions(visitedLocation);
+    }
+}
@@ -0,0 +1,64 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * GpsUtil serving a fixed set of attractions and user locations following a latency model,
+ * instead of the random sleeps of the real library.
+ * The n-th location of a user, its latency and its failure only depend on the user id and n.
+ */
+class StubGpsUtil extends GpsUtil {
+    private final List<Attraction> attractions;
+    private final LatencyModel latencyModel;
+    private final ConcurrentMap<UUID, AtomicLong> callCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param attractions   the attractions returned by getAttractions
+     * @param latencyMicros the time taken by getUserLocation, in microseconds
+     */
+    StubGpsUtil(List<Attraction> attractions, long latencyMicros) {
+        this(attractions, LatencyModel.fixed(Duration.of(latencyMicros, ChronoUnit.MICROS)));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param attractions  the attractions returned by getAttractions
+     * @param latencyModel the latency and failures of getUserLocation
+     */
+    StubGpsUtil(List<Attraction> attractions, LatencyModel latencyModel) {
+        this.attractions = List.copyOf(attractions);
+        this.latencyModel = latencyModel;
+    }
+
+    @Override
+    public VisitedLocation getUserLocation(UUID userId) {
+        long call = callCounts.computeIfAbsent(userId, id -> new AtomicLong()).getAndIncrement();
+        long callKey = LatencyModel.callKey(userId, call);
+        latencyModel.simulateCall("gpsUtil", callKey);
+        SplittableRandom random = new SplittableRandom(BenchmarkFixtures.SEED ^ callKey);
+        return new VisitedLocation(userId,
+                new Location(BenchmarkFixtures.latitude(random), BenchmarkFixtures.longitude(random)), new Date());
+    }
+
+    @Override
+    public List<Attraction> getAttractions() {
+        return new ArrayList<>(attractions);
+    }
+}
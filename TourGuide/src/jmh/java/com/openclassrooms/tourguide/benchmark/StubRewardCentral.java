@@ -0,0 +1,49 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rewardCentral.RewardCentral;
+
+/**
+ * RewardCentral answering deterministic points following a latency model,
+ * instead of the random sleeps of the real library.
+ * The latency and failure of the n-th call for an (attraction, user) pair only depend on the pair and n,
+ * so that a failed lookup gets a new draw when retried.
+ */
+class StubRewardCentral extends RewardCentral {
+    private final LatencyModel latencyModel;
+    // calls made so far per (attraction, user) pair key
+    private final ConcurrentMap<Long, AtomicLong> callCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param latencyMicros the time taken by getAttractionRewardPoints, in microseconds
+     */
+    StubRewardCentral(long latencyMicros) {
+        this(LatencyModel.fixed(Duration.of(latencyMicros, ChronoUnit.MICROS)));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param latencyModel the latency and failures of getAttractionRewardPoints
+     */
+    StubRewardCentral(LatencyModel latencyModel) {
+        this.latencyModel = latencyModel;
+    }
+
+    @Override
+    public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+        long pairKey = LatencyModel.callKey(attractionId,
+                userId.getMostSignificantBits() ^ userId.getLeastSignificantBits());
+        long call = callCounts.computeIfAbsent(pairKey, key -> new AtomicLong()).getAndIncrement();
+        latencyModel.simulateCall("rewardCentral", LatencyModel.callKey(userId, pairKey + call));
+        return Math.floorMod(attractionId.hashCode() * 31 + userId.hashCode(), 1000) + 1;
+    }
+}
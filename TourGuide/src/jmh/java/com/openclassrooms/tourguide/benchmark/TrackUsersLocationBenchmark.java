@@ -0,0 +1,81 @@
+package com.openclassrooms.tourguide.benchmark;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * One tracking pass over userCount users, including the reward stage: the pass ends when the reward pipeline
+ * is idle. Users keep historyLength locations, so the history stops growing after historyLength passes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrackUsersLocationBenchmark {
+    private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(1);
+
+    @Param({"100", "1000"})
+    public int userCount;
+
+    @Param({"100"})
+    public int historyLength;
+
+    @Param({"26"})
+    public int attractionCount;
+
+    @Param({"0", "1000"})
+    public long gpsLatencyMicros;
+
+    @Param({"0"})
+    public long rewardLatencyMicros;
+
+    private BenchmarkServices services;
+    private TourGuideService tourGuideService;
+    private List<User> users;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        services = new BenchmarkServices(BenchmarkFixtures.attractions(attractionCount), gpsLatencyMicros,
+                rewardLatencyMicros);
+        tourGuideService = services.tourGuideService();
+        users = new ArrayList<>(userCount);
+        for (int i = 0; i < userCount; i++) {
+            users.add(BenchmarkFixtures.user(i, historyLength));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        services.close();
+    }
+
+    @Benchmark
+    public int trackUsersLocation() throws InterruptedException {
+        int tracked = tourGuideService.trackUsersLocation(users).size();
+        if (!tourGuideService.getRewardPipeline().awaitIdle(IDLE_TIMEOUT)) {
+            throw new IllegalStateException("Reward pipeline still busy after " + IDLE_TIMEOUT);
+        }
+        return tracked;
+    }
+}
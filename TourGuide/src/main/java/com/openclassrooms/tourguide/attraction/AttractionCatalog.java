@@ -0,0 +1,171 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+
+/**
+ * Catalog of the attractions shared by the services.
+ * Readers get an immutable, versioned snapshot holding the attractions and the structures derived from them.
+ * A refresh builds the next snapshot completely before publishing it, so readers never block
+ * and never see an index out of sync with the attractions.
+ */
+public class AttractionCatalog implements AutoCloseable {
+    public static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofHours(1);
+
+    private static final Logger log = LoggerFactory.getLogger(AttractionCatalog.class);
+
+    /**
+     * Immutable state of the catalog
+     *
+     * @param version     incremented each time the attractions change
+     * @param attractions the attractions
+     * @param index       the spatial index over the attractions
+     */
+    public record Snapshot(long version, List<Attraction> attractions, AttractionIndex index) {
+    }
+
+    private final GpsUtil gpsUtil;
+    private final ScheduledExecutorService refresher;
+    private final List<Consumer<Snapshot>> listeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot snapshot = null;
+
+    /**
+     * Constructor of a catalog loaded once, on first use
+     *
+     * @param gpsUtil the GPS utility providing the attractions
+     */
+    public AttractionCatalog(GpsUtil gpsUtil) {
+        this(gpsUtil, Duration.ZERO);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param gpsUtil         the GPS utility providing the attractions
+     * @param refreshInterval the time between two background refreshes, zero or negative to never refresh
+     */
+    public AttractionCatalog(GpsUtil gpsUtil, Duration refreshInterval) {
+        this.gpsUtil = gpsUtil;
+        if (refreshInterval.isZero() || refreshInterval.isNegative()) {
+            this.refresher = null;
+        } else {
+            this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "attraction-catalog");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = refreshInterval.toMillis();
+            refresher.scheduleWithFixedDelay(this::refreshQuietly, intervalMillis, intervalMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Get the current snapshot, loading the attractions on first use
+     *
+     * @return the snapshot
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    publish(build(0, gpsUtil.getAttractions()));
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    public List<Attraction> getAttractions() {
+        return getSnapshot().attractions();
+    }
+
+    public AttractionIndex getIndex() {
+        return getSnapshot().index();
+    }
+
+    /**
+     * Register a listener called with each new snapshot, to rebuild structures derived from the catalog
+     *
+     * @param listener the listener
+     */
+    public void addListener(Consumer<Snapshot> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Reload the attractions and publish a new snapshot if they changed
+     * gpsUtil generates new attractionIds on each load, so attractions are compared
+     * by name and coordinates: an unchanged catalog keeps its snapshot and its ids.
+     *
+     * @return true if a new version has been published
+     */
+    public synchronized boolean refresh() {
+        List<Attraction> attractions = gpsUtil.getAttractions();
+        Snapshot current = snapshot;
+        if (current != null && sameAttractions(current.attractions(), attractions)) {
+            return false;
+        }
+        publish(build(current == null ? 0 : current.version() + 1, attractions));
+        return true;
+    }
+
+    /**
+     * Stop the background refresh
+     */
+    @Override
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            if (refresh()) {
+                log.info("Attraction catalog updated to version {}", snapshot.version());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Attraction catalog refresh failed, keeping version {}", snapshot == null ? -1 : snapshot.version(), e);
+        }
+    }
+
+    private static Snapshot build(long version, List<Attraction> attractions) {
+        List<Attraction> copy = List.copyOf(attractions);
+        // register the ordinals up front, so that they are assigned in catalog order
+        copy.forEach(AttractionOrdinals::of);
+        return new Snapshot(version, copy, new AttractionIndex(copy));
+    }
+
+    private void publish(Snapshot next) {
+        snapshot = next;
+        listeners.forEach(listener -> listener.accept(next));
+    }
+
+    private static boolean sameAttractions(List<Attraction> current, List<Attraction> loaded) {
+        if (current.size() != loaded.size()) {
+            return false;
+        }
+        for (int i = 0; i < current.size(); i++) {
+            Attraction a = current.get(i);
+            Attraction b = loaded.get(i);
+            if (!a.attractionName.equals(b.attractionName) || a.latitude != b.latitude || a.longitude != b.longitude) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,12 @@
+package com.openclassrooms.tourguide.attraction;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * An attraction and its distance to a location
+ *
+ * @param attraction      the attraction
+ * @param distanceInMiles the distance in miles
+ */
+public record AttractionDistance(Attraction attraction, double distanceInMiles) {
+}
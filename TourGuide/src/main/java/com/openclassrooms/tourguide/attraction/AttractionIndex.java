@@ -0,0 +1,330 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+
+/**
+ * Immutable latitude/longitude grid over a set of attractions.
+ * Each attraction is stored in exactly one cell, so a radius query only visits the cells
+ * overlapping the bounding box of the search circle instead of the whole catalog.
+ * The candidates returned are a superset of the attractions within the radius:
+ * callers still have to apply the exact distance check, or use getWithin which applies it with a DistanceKernel.
+ */
+public class AttractionIndex {
+    private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+    private static final double MILES_PER_DEGREE = 60 * STATUTE_MILES_PER_NAUTICAL_MILE;
+    // padding in degrees so that rounding never excludes an attraction lying on the circle
+    private static final double PADDING_DEGREES = 1e-6;
+    private static final double DEFAULT_CELL_SIZE_DEGREES = 1.0;
+    private static final double NEAREST_INITIAL_RADIUS_MILES = 100;
+
+    private final List<Attraction> attractions;
+    private final double cellSizeDegrees;
+    private final int rows;
+    private final int columns;
+    // indices in attractions of the attractions of each cell, null for an empty cell
+    private final int[][] cells;
+    private final DistanceKernel distanceKernel;
+
+    /**
+     * Constructor
+     *
+     * @param attractions the attractions to index
+     */
+    public AttractionIndex(List<Attraction> attractions) {
+        this(attractions, DEFAULT_CELL_SIZE_DEGREES);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param attractions     the attractions to index
+     * @param cellSizeDegrees the size of a grid cell in degrees
+     */
+    public AttractionIndex(List<Attraction> attractions, double cellSizeDegrees) {
+        this.attractions = List.copyOf(attractions);
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.rows = (int) Math.ceil(180 / cellSizeDegrees);
+        this.columns = (int) Math.ceil(360 / cellSizeDegrees);
+        this.cells = new int[rows * columns][];
+        this.distanceKernel = new DistanceKernel(this.attractions);
+
+        for (int i = 0; i < this.attractions.size(); i++) {
+            Attraction attraction = this.attractions.get(i);
+            int cell = rowOf(attraction.latitude) * columns + columnOf(attraction.longitude);
+            int[] indices = cells[cell] == null ? new int[1] : Arrays.copyOf(cells[cell], cells[cell].length + 1);
+            indices[indices.length - 1] = i;
+            cells[cell] = indices;
+        }
+    }
+
+    /**
+     * Get all the indexed attractions
+     *
+     * @return the attractions
+     */
+    public List<Attraction> getAttractions() {
+        return attractions;
+    }
+
+    /**
+     * Get the attractions that may be within a radius of a location
+     *
+     * @param location      the center of the search
+     * @param radiusInMiles the radius in miles
+     * @return the candidate attractions
+     */
+    public List<Attraction> getCandidates(Location location, double radiusInMiles) {
+        return getCandidates(location.latitude, location.longitude, radiusInMiles);
+    }
+
+    /**
+     * Get the attractions that may be within a radius of a point
+     *
+     * @param latitude      the latitude of the center of the search
+     * @param longitude     the longitude of the center of the search
+     * @param radiusInMiles the radius in miles
+     * @return the candidate attractions
+     */
+    public List<Attraction> getCandidates(double latitude, double longitude, double radiusInMiles) {
+        if (BoundingBox.of(latitude, longitude, radiusInMiles) == null) {
+            return attractions;
+        }
+        return collect(latitude, longitude, radiusInMiles, null);
+    }
+
+    /**
+     * Get the attractions within a radius of a point
+     * The distance is the great-circle distance used by RewardsService.getDistance.
+     *
+     * @param latitude      the latitude of the center of the search
+     * @param longitude     the longitude of the center of the search
+     * @param radiusInMiles the radius in miles
+     * @return the attractions whose distance to the point is lower or equal to the radius
+     */
+    public List<Attraction> getWithin(double latitude, double longitude, double radiusInMiles) {
+        return collect(latitude, longitude, radiusInMiles,
+                distanceKernel.query(latitude, longitude, radiusInMiles));
+    }
+
+    /**
+     * Get the kernel computing the distances to the indexed attractions
+     *
+     * @return the kernel, addressing the attractions by their index in getAttractions
+     */
+    public DistanceKernel getDistanceKernel() {
+        return distanceKernel;
+    }
+
+    /**
+     * Get the attractions nearest to a point
+     * The search radius starts small and doubles until enough attractions are within it,
+     * so only the cells around the point are visited. Once the circle spans more cells than there are
+     * attractions, every attraction is measured instead: a sparse catalog is scanned rather than its empty cells.
+     *
+     * @param latitude  the latitude of the point
+     * @param longitude the longitude of the point
+     * @param count     the number of attractions wanted
+     * @return at most count attractions with their distance, nearest first
+     */
+    public List<AttractionDistance> getNearest(double latitude, double longitude, int count) {
+        if (count <= 0 || attractions.isEmpty()) {
+            return Collections.emptyList();
+        }
+        for (double radius = NEAREST_INITIAL_RADIUS_MILES; ; radius *= 2) {
+            BoundingBox box = BoundingBox.of(latitude, longitude, radius);
+            DistanceKernel.Query query = distanceKernel.query(latitude, longitude, radius);
+            if (box == null || cellCount(box) >= attractions.size()) {
+                List<AttractionDistance> all = new ArrayList<>(attractions.size());
+                for (int i = 0; i < attractions.size(); i++) {
+                    all.add(new AttractionDistance(attractions.get(i), query.distance(i)));
+                }
+                return nearest(all, count);
+            }
+            List<AttractionDistance> found = new ArrayList<>();
+            forEachCandidate(latitude, longitude, radius, index -> {
+                if (query.isWithin(index)) {
+                    found.add(new AttractionDistance(attractions.get(index), query.distance(index)));
+                }
+            });
+            if (found.size() >= count) {
+                // every attraction outside the radius is farther than the ones found
+                return nearest(found, count);
+            }
+        }
+    }
+
+    private static List<AttractionDistance> nearest(List<AttractionDistance> found, int count) {
+        found.sort(Comparator.comparingDouble(AttractionDistance::distanceInMiles));
+        return List.copyOf(found.subList(0, Math.min(count, found.size())));
+    }
+
+    /**
+     * Collect the candidates of a circle
+     *
+     * @param query the exact filter to apply, or null to keep every candidate
+     */
+    private List<Attraction> collect(double latitude, double longitude, double radiusInMiles,
+                                     DistanceKernel.Query query) {
+        List<Attraction> collected = new ArrayList<>();
+        forEachCandidate(latitude, longitude, radiusInMiles, index -> {
+            if (query == null || query.isWithin(index)) {
+                collected.add(attractions.get(index));
+            }
+        });
+        return collected;
+    }
+
+    /**
+     * Visit the index of every attraction of the cells overlapping the bounding box of a circle,
+     * or of every attraction when the circle covers the whole sphere
+     */
+    private void forEachCandidate(double latitude, double longitude, double radiusInMiles, IntConsumer action) {
+        BoundingBox box = BoundingBox.of(latitude, longitude, radiusInMiles);
+        if (box == null) {
+            for (int i = 0; i < attractions.size(); i++) {
+                action.accept(i);
+            }
+            return;
+        }
+
+        int firstRow = rowOf(box.minLatitude);
+        int lastRow = rowOf(box.maxLatitude);
+        int firstColumn = box.allLongitudes ? 0 : (int) Math.floor((box.minLongitude + 180) / cellSizeDegrees);
+        int columnCount = columnCount(box);
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int i = 0; i < columnCount; i++) {
+                int column = Math.floorMod(firstColumn + i, columns);
+                int[] cell = cells[row * columns + column];
+                if (cell != null) {
+                    for (int index : cell) {
+                        action.accept(index);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if a point is inside the bounding box of a circle.
+     * A point outside the box is guaranteed to be farther than the radius.
+     *
+     * @param center        the center of the circle
+     * @param radiusInMiles the radius in miles
+     * @param point         the point to check
+     * @return false if the point is certainly out of the circle, true otherwise
+     */
+    public static boolean isInBoundingBox(Location center, double radiusInMiles, Location point) {
+        return isInBoundingBox(center.latitude, center.longitude, radiusInMiles, point);
+    }
+
+    /**
+     * Check if a point is inside the bounding box of a circle.
+     *
+     * @param latitude      the latitude of the center of the circle
+     * @param longitude     the longitude of the center of the circle
+     * @param radiusInMiles the radius in miles
+     * @param point         the point to check
+     * @return false if the point is certainly out of the circle, true otherwise
+     */
+    public static boolean isInBoundingBox(double latitude, double longitude, double radiusInMiles, Location point) {
+        BoundingBox box = BoundingBox.of(latitude, longitude, radiusInMiles);
+        if (box == null) {
+            return true;
+        }
+        if (point.latitude < box.minLatitude || point.latitude > box.maxLatitude) {
+            return false;
+        }
+        if (box.allLongitudes) {
+            return true;
+        }
+        double delta = Math.abs(Math.IEEEremainder(point.longitude - longitude, 360));
+        return delta <= box.halfLongitudeSpan;
+    }
+
+    private int columnCount(BoundingBox box) {
+        if (box.allLongitudes) {
+            return columns;
+        }
+        int firstColumn = (int) Math.floor((box.minLongitude + 180) / cellSizeDegrees);
+        int lastColumn = (int) Math.floor((box.maxLongitude + 180) / cellSizeDegrees);
+        return Math.min(lastColumn - firstColumn + 1, columns);
+    }
+
+    private long cellCount(BoundingBox box) {
+        return (long) (rowOf(box.maxLatitude) - rowOf(box.minLatitude) + 1) * columnCount(box);
+    }
+
+    private int rowOf(double latitude) {
+        int row = (int) Math.floor((latitude + 90) / cellSizeDegrees);
+        return Math.max(0, Math.min(rows - 1, row));
+    }
+
+    private int columnOf(double longitude) {
+        int column = (int) Math.floor((longitude + 180) / cellSizeDegrees);
+        return Math.floorMod(column, columns);
+    }
+
+    /**
+     * Latitude/longitude box enclosing a spherical cap.
+     * Longitudes may exceed [-180, 180] when the box crosses the antimeridian.
+     */
+    private static final class BoundingBox {
+        private final double minLatitude;
+        private final double maxLatitude;
+        private final double minLongitude;
+        private final double maxLongitude;
+        private final double halfLongitudeSpan;
+        private final boolean allLongitudes;
+
+        private BoundingBox(double minLatitude, double maxLatitude, double longitude, double halfLongitudeSpan,
+                            boolean allLongitudes) {
+            this.minLatitude = minLatitude;
+            this.maxLatitude = maxLatitude;
+            this.minLongitude = longitude - halfLongitudeSpan;
+            this.maxLongitude = longitude + halfLongitudeSpan;
+            this.halfLongitudeSpan = halfLongitudeSpan;
+            this.allLongitudes = allLongitudes;
+        }
+
+        /**
+         * Build the box of a circle
+         *
+         * @param latitude      the latitude of the center of the circle
+         * @param longitude     the longitude of the center of the circle
+         * @param radiusInMiles the radius in miles
+         * @return the box, or null when the circle covers the whole sphere
+         */
+        private static BoundingBox of(double latitude, double longitude, double radiusInMiles) {
+            double radiusDegrees = radiusInMiles / MILES_PER_DEGREE;
+            if (Double.isNaN(radiusDegrees) || radiusDegrees >= 180) {
+                return null;
+            }
+            radiusDegrees += PADDING_DEGREES;
+
+            double minLatitude = latitude - radiusDegrees;
+            double maxLatitude = latitude + radiusDegrees;
+            if (minLatitude <= -90 || maxLatitude >= 90) {
+                // the cap contains a pole: every longitude can be reached
+                return new BoundingBox(Math.max(minLatitude, -90), Math.min(maxLatitude, 90),
+                        longitude, 180, true);
+            }
+
+            double sinRatio = Math.sin(Math.toRadians(radiusDegrees)) / Math.cos(Math.toRadians(latitude));
+            if (sinRatio >= 1) {
+                return new BoundingBox(minLatitude, maxLatitude, longitude, 180, true);
+            }
+            double halfLongitudeSpan = Math.toDegrees(Math.asin(sinRatio)) + PADDING_DEGREES;
+            return new BoundingBox(minLatitude, maxLatitude, longitude, halfLongitudeSpan,
+                    halfLongitudeSpan >= 180);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import gpsUtil.location.Attraction;
+
+/**
+ * Registry assigning a dense ordinal to each attraction.
+ * gpsUtil generates a new attractionId each time the attractions are loaded, so the ordinals are keyed
+ * by attraction name. Ordinals are never reassigned: they stay valid when the catalog is reloaded.
+ */
+public final class AttractionOrdinals {
+    private static final ConcurrentMap<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextOrdinal = new AtomicInteger();
+
+    private AttractionOrdinals() {
+    }
+
+    /**
+     * Get the ordinal of an attraction, registering it on first use
+     *
+     * @param attraction the attraction
+     * @return the ordinal of the attraction
+     */
+    public static int of(Attraction attraction) {
+        return of(attraction.attractionName);
+    }
+
+    /**
+     * Get the ordinal of an attraction name, registering it on first use
+     *
+     * @param attractionName the attraction name
+     * @return the ordinal of the attraction
+     */
+    public static int of(String attractionName) {
+        Integer ordinal = ordinals.get(attractionName);
+        if (ordinal == null) {
+            ordinal = ordinals.computeIfAbsent(attractionName, name -> nextOrdinal.getAndIncrement());
+        }
+        return ordinal;
+    }
+
+    /**
+     * Get the number of registered attractions
+     *
+     * @return the number of ordinals assigned so far
+     */
+    public static int size() {
+        return nextOrdinal.get();
+    }
+}
@@ -0,0 +1,127 @@
+package com.openclassrooms.tourguide.attraction;
+
+import java.util.List;
+
+import gpsUtil.location.Location;
+
+/**
+ * Great-circle distances from a query point to a fixed set of points.
+ * The radians and the sine/cosine of the latitude of every point are computed once,
+ * so a distance costs one cos and one acos instead of four conversions, five sin/cos and one acos.
+ * Distances are computed with the same formula as RewardsService.getDistance.
+ */
+public final class DistanceKernel {
+    private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+    private static final double MILES_PER_DEGREE = 60 * STATUTE_MILES_PER_NAUTICAL_MILE;
+    // margin around the radius within which the exact distance decides
+    private static final double EXACT_MARGIN = 1e-9;
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] sinLatitudes;
+    private final double[] cosLatitudes;
+
+    /**
+     * Constructor
+     *
+     * @param points the points, addressed by their index in the list
+     */
+    public DistanceKernel(List<? extends Location> points) {
+        int size = points.size();
+        this.latitudes = new double[size];
+        this.longitudes = new double[size];
+        this.sinLatitudes = new double[size];
+        this.cosLatitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            Location point = points.get(i);
+            latitudes[i] = Math.toRadians(point.latitude);
+            longitudes[i] = Math.toRadians(point.longitude);
+            sinLatitudes[i] = Math.sin(latitudes[i]);
+            cosLatitudes[i] = Math.cos(latitudes[i]);
+        }
+    }
+
+    public int size() {
+        return latitudes.length;
+    }
+
+    /**
+     * Prepare the distance computations from a point
+     *
+     * @param latitude      the latitude of the query point
+     * @param longitude     the longitude of the query point
+     * @param radiusInMiles the radius used by isWithin
+     * @return the query
+     */
+    public Query query(double latitude, double longitude, double radiusInMiles) {
+        return new Query(latitude, longitude, radiusInMiles);
+    }
+
+    /**
+     * Distances from one query point. Not thread-safe, but cheap to create.
+     */
+    public final class Query {
+        private final double latitude;
+        private final double longitude;
+        private final double sinLatitude;
+        private final double cosLatitude;
+        private final double radiusInMiles;
+        private final double radiusRadians;
+        private final double cosRadius;
+
+        private Query(double latitude, double longitude, double radiusInMiles) {
+            this.latitude = Math.toRadians(latitude);
+            this.longitude = Math.toRadians(longitude);
+            this.sinLatitude = Math.sin(this.latitude);
+            this.cosLatitude = Math.cos(this.latitude);
+            this.radiusInMiles = radiusInMiles;
+            this.radiusRadians = Math.toRadians(radiusInMiles / MILES_PER_DEGREE);
+            this.cosRadius = Math.cos(radiusRadians);
+        }
+
+        /**
+         * Get the distance to a point
+         *
+         * @param index the index of the point
+         * @return the distance in miles
+         */
+        public double distance(int index) {
+            double angle = Math.acos(Math.min(1, cosAngle(index)));
+            double nauticalMiles = 60 * Math.toDegrees(angle);
+            return STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
+        }
+
+        /**
+         * Check if a point is within the radius of the query.
+         * The latitude difference rejects far points without any trigonometry, the cosine of the angle
+         * is compared to the cosine of the radius, and the exact distance is only computed near the threshold.
+         *
+         * @param index the index of the point
+         * @return true if the distance to the point is lower or equal to the radius
+         */
+        public boolean isWithin(int index) {
+            if (Double.isNaN(radiusRadians)) {
+                return false;
+            }
+            if (radiusRadians >= Math.PI) {
+                return true;
+            }
+            if (Math.abs(latitudes[index] - latitude) > radiusRadians + EXACT_MARGIN) {
+                return false;
+            }
+            double cosAngle = cosAngle(index);
+            if (cosAngle > cosRadius + EXACT_MARGIN) {
+                return true;
+            }
+            if (cosAngle < cosRadius - EXACT_MARGIN) {
+                return false;
+            }
+            return distance(index) <= radiusInMiles;
+        }
+
+        private double cosAngle(int index) {
+            return sinLatitudes[index] * sinLatitude
+                    + cosLatitudes[index] * cosLatitude * Math.cos(longitudes[index] - longitude);
+        }
+    }
+}
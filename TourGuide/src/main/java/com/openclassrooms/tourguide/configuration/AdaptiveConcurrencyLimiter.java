@@ -0,0 +1,226 @@
+package com.openclassrooms.tourguide.configuration;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Concurrency limit of the calls to an external client, adjusted from their latency (AIMD).
+ * The latency of each call feeds a short and a long exponential moving average. While the short one stays within
+ * latencyTolerance times the long one, the limit grows by about one per limit calls, as long as it is used;
+ * when the short one exceeds it, the backend is saturating and the limit is cut by 10%, at most once per limit calls.
+ * A caller waits for a permit up to maxWait, then is rejected.
+ */
+public class AdaptiveConcurrencyLimiter {
+    public static final double DEFAULT_LATENCY_TOLERANCE = 2.0;
+    public static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(30);
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double SHORT_SMOOTHING = 0.1;
+    private static final double LONG_SMOOTHING = 0.01;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxWaitNanos;
+    private final double latencyTolerance;
+    private final LongSupplier nanoClock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private final LongAdder rejections = new LongAdder();
+    // guarded by lock
+    private double limit;
+    private int inFlight = 0;
+    private double shortLatency = 0;
+    private double longLatency = 0;
+    private long samplesSinceBackoff = 0;
+
+    /**
+     * Constructor
+     *
+     * @param name     the name of the client, used in the rejection messages
+     * @param settings the initial, minimum and maximum limits, the maximum wait and the latency tolerance
+     */
+    public AdaptiveConcurrencyLimiter(String name, TourGuideProperties.Limit settings) {
+        this(name, settings.getInitialLimit(), settings.getMinLimit(), settings.getMaxLimit(), settings.getMaxWait(),
+                settings.getLatencyTolerance(), System::nanoTime);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param name             the name of the client, used in the rejection messages
+     * @param initialLimit     the number of concurrent calls allowed before any latency is observed
+     * @param minLimit         the lowest limit the backoff can reach
+     * @param maxLimit         the highest limit the growth can reach
+     * @param maxWait          the time a caller waits for a permit before being rejected
+     * @param latencyTolerance the ratio of the recent latency to the long-term latency above which the limit backs off
+     * @param nanoClock        the clock measuring the latency of the calls, in nanoseconds
+     */
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, Duration maxWait,
+                                      double latencyTolerance, LongSupplier nanoClock) {
+        if (minLimit < 1 || maxLimit < minLimit || latencyTolerance <= 1) {
+            throw new IllegalArgumentException("Invalid concurrency limits for " + name + ": the minimum must be "
+                    + "positive, the maximum at least the minimum, and the latency tolerance above 1");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.maxWaitNanos = maxWait.toNanos();
+        this.latencyTolerance = latencyTolerance;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Run a call within the limit
+     *
+     * @param call the call to the client
+     * @return the result of the call
+     * @throws RejectedExecutionException if no permit was available within maxWait, or the wait was interrupted
+     */
+    public <T> T call(Supplier<T> call) {
+        Permit permit;
+        try {
+            permit = acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a " + name + " permit", e);
+        }
+        try {
+            return call.get();
+        } finally {
+            permit.release();
+        }
+    }
+
+    /**
+     * Wait for a permit, to be released once the call is over
+     *
+     * @return the permit
+     * @throws InterruptedException       if interrupted while waiting
+     * @throws RejectedExecutionException if no permit was available within maxWait
+     */
+    public Permit acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = maxWaitNanos;
+            while (inFlight >= (int) limit) {
+                if (remaining <= 0) {
+                    rejections.increment();
+                    throw new RejectedExecutionException("No " + name + " permit within "
+                            + Duration.ofNanos(maxWaitNanos) + ", " + inFlight + " calls in flight");
+                }
+                remaining = permitReleased.awaitNanos(remaining);
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+        return new Permit(nanoClock.getAsLong());
+    }
+
+    private void release(long latencyNanos) {
+        lock.lock();
+        try {
+            int permitsBefore = (int) limit;
+            adjust(latencyNanos, inFlight);
+            inFlight--;
+            permitReleased.signal();
+            for (int i = permitsBefore; i < (int) limit; i++) {
+                permitReleased.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Update the latency averages, then the limit
+     *
+     * @param latencyNanos the latency of the call released
+     * @param used         the number of calls in flight when it ended, itself included
+     */
+    private void adjust(long latencyNanos, int used) {
+        if (longLatency == 0) {
+            shortLatency = latencyNanos;
+            longLatency = latencyNanos;
+        } else {
+            shortLatency += (latencyNanos - shortLatency) * SHORT_SMOOTHING;
+            longLatency += (latencyNanos - longLatency) * LONG_SMOOTHING;
+        }
+        samplesSinceBackoff++;
+        if (shortLatency > longLatency * latencyTolerance) {
+            if (samplesSinceBackoff >= limit) {
+                limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                samplesSinceBackoff = 0;
+            }
+        } else if (used * 2 >= limit) {
+            // only a limit in use proves the backend copes with it
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the current limit
+     *
+     * @return the number of concurrent calls allowed
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of callers rejected after waiting maxWait
+     *
+     * @return the number of rejections
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * Right to make one call, measuring its latency
+     */
+    public final class Permit {
+        private final long acquiredAt;
+        private boolean released = false;
+
+        private Permit(long acquiredAt) {
+            this.acquiredAt = acquiredAt;
+        }
+
+        /**
+         * Give the permit back, reporting the latency of the call
+         */
+        public void release() {
+            if (released) {
+                return;
+            }
+            released = true;
+            AdaptiveConcurrencyLimiter.this.release(Math.max(0, nanoClock.getAsLong() - acquiredAt));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.openclassrooms.tourguide.configuration;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * ClientLimiters owns the adaptive concurrency limiter of each external library, one per client.
+ * As a MeterBinder, it publishes the limit, the calls in flight and the rejections of each client.
+ */
+public class ClientLimiters implements MeterBinder {
+
+    /**
+     * External libraries called by the application
+     */
+    public enum Client {
+        GPS_UTIL("gpsUtil"),
+        REWARD_CENTRAL("rewardCentral"),
+        TRIP_PRICER("tripPricer");
+
+        private final String clientName;
+
+        Client(String clientName) {
+            this.clientName = clientName;
+        }
+
+        public String getClientName() {
+            return clientName;
+        }
+    }
+
+    private final Map<Client, AdaptiveConcurrencyLimiter> limiters = new EnumMap<>(Client.class);
+
+    /**
+     * Constructor with the default settings
+     */
+    public ClientLimiters() {
+        this(new TourGuideProperties());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param properties the application settings
+     */
+    public ClientLimiters(TourGuideProperties properties) {
+        TourGuideProperties.Limits limits = properties.getLimits();
+        limiters.put(Client.GPS_UTIL, create(Client.GPS_UTIL, limits.getGpsUtil()));
+        limiters.put(Client.REWARD_CENTRAL, create(Client.REWARD_CENTRAL, limits.getRewardCentral()));
+        limiters.put(Client.TRIP_PRICER, create(Client.TRIP_PRICER, limits.getTripPricer()));
+    }
+
+    /**
+     * Get the limiter of a client
+     *
+     * @param client the client
+     * @return the limiter the calls to this client go through
+     */
+    public AdaptiveConcurrencyLimiter get(Client client) {
+        return limiters.get(client);
+    }
+
+    /**
+     * Register the "tourguide.client.limit", "tourguide.client.in.flight" gauges
+     * and the "tourguide.client.rejections" counter of every client, tagged with the client name
+     *
+     * @param registry the registry
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        limiters.forEach((client, limiter) -> {
+            Gauge.builder("tourguide.client.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .description("Concurrent calls allowed")
+                    .tag("client", client.getClientName())
+                    .register(registry);
+            Gauge.builder("tourguide.client.in.flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                    .description("Calls in progress")
+                    .tag("client", client.getClientName())
+                    .register(registry);
+            FunctionCounter.builder("tourguide.client.rejections", limiter,
+                            AdaptiveConcurrencyLimiter::getRejectionCount)
+                    .description("Calls rejected after waiting for a permit")
+                    .tag("client", client.getClientName())
+                    .register(registry);
+        });
+    }
+
+    private static AdaptiveConcurrencyLimiter create(Client client, TourGuideProperties.Limit settings) {
+        return new AdaptiveConcurrencyLimiter(client.getClientName(), settings);
+    }
+}
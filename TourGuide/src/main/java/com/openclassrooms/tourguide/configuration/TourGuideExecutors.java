@@ -0,0 +1,211 @@
+package com.openclassrooms.tourguide.configuration;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+/**
+ * TourGuideExecutors owns every thread pool of the application, one per workload.
+ * Pools are bounded, their threads expire when idle, and close() drains them before forcing the shutdown.
+ * As a MeterBinder, it publishes the thread and queue gauges of each pool, tagged with the pool name.
+ */
+public class TourGuideExecutors implements AutoCloseable, MeterBinder {
+    private static final Logger log = LoggerFactory.getLogger(TourGuideExecutors.class);
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    /**
+     * Workloads of the application, each one running on its own pool
+     */
+    public enum Workload {
+        // location tracking tasks, blocking on gpsUtil
+        TRACKING("tracking", true),
+        // per-user reward passes, waiting for the reward lookups
+        REWARDS("rewards", true),
+        // the workers of the RewardPipeline, each one running for the life of the pipeline
+        REWARD_PIPELINE("reward-pipeline", true),
+        // calls to RewardCentral dispatched by the RewardPointsCoalescer
+        REWARD_LOOKUPS("reward-lookups", true),
+        // calls to TripPricer made by the TripDealsCache
+        TRIP_PRICING("trip-pricing", true),
+        // the Tracker loop
+        TRACKER("tracker", false),
+        // the chunks of internal test users generated by the InternalUserGenerator
+        INTERNAL_USERS("internal-users", false);
+
+        private final String poolName;
+        private final boolean blocking;
+
+        Workload(String poolName, boolean blocking) {
+            this.poolName = poolName;
+            this.blocking = blocking;
+        }
+
+        public String getPoolName() {
+            return poolName;
+        }
+    }
+
+    /**
+     * What to do with a task submitted to a full pool
+     */
+    public enum RejectionPolicy {
+        // throw a RejectedExecutionException
+        ABORT,
+        // run the task on the submitting thread, slowing the producer down
+        CALLER_RUNS
+    }
+
+    private final Map<Workload, ExecutorService> executors = new EnumMap<>(Workload.class);
+    private final Duration shutdownTimeout;
+
+    /**
+     * Constructor with the default settings
+     */
+    public TourGuideExecutors() {
+        this(new TourGuideProperties());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param properties the application settings
+     */
+    public TourGuideExecutors(TourGuideProperties properties) {
+        TourGuideProperties.ExecutorPools pools = properties.getExecutors();
+        boolean virtualThreads = properties.getExecution().isVirtualThreads();
+        this.shutdownTimeout = pools.getShutdownTimeout();
+
+        executors.put(Workload.TRACKING, create(Workload.TRACKING, pools.getTracking(), virtualThreads));
+        executors.put(Workload.REWARDS, create(Workload.REWARDS, pools.getRewards(), virtualThreads));
+        executors.put(Workload.REWARD_PIPELINE,
+                create(Workload.REWARD_PIPELINE, pipelinePool(properties), virtualThreads));
+        executors.put(Workload.REWARD_LOOKUPS, create(Workload.REWARD_LOOKUPS, pools.getRewardLookups(), virtualThreads));
+        executors.put(Workload.TRIP_PRICING, create(Workload.TRIP_PRICING, pools.getTripPricing(), virtualThreads));
+        executors.put(Workload.TRACKER, create(Workload.TRACKER, new TourGuideProperties.Pool(1, 1), false));
+        executors.put(Workload.INTERNAL_USERS, create(Workload.INTERNAL_USERS,
+                new TourGuideProperties.Pool(Runtime.getRuntime().availableProcessors(), 10_000), false));
+    }
+
+    /**
+     * Get the pool of a workload
+     *
+     * @param workload the workload
+     * @return the executor running this workload
+     */
+    public ExecutorService get(Workload workload) {
+        return executors.get(workload);
+    }
+
+    /**
+     * Register the gauges of every pool: the executor.* gauges of Micrometer, and for the bounded pools
+     * "tourguide.executor.saturation", the share of the threads and queue slots taken, 1 when the next task
+     * is rejected or run by the caller
+     *
+     * @param registry the registry
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        executors.forEach((workload, executor) -> {
+            new ExecutorServiceMetrics(executor, workload.getPoolName(), Tags.empty()).bindTo(registry);
+            if (executor instanceof ThreadPoolExecutor pool) {
+                Gauge.builder("tourguide.executor.saturation", pool, TourGuideExecutors::saturation)
+                        .description("Share of the threads and queue slots of the pool in use")
+                        .tag("name", workload.getPoolName())
+                        .register(registry);
+            }
+        });
+    }
+
+    private static double saturation(ThreadPoolExecutor pool) {
+        int queued = pool.getQueue().size();
+        int capacity = pool.getMaximumPoolSize() + queued + pool.getQueue().remainingCapacity();
+        return (double) (pool.getActiveCount() + queued) / capacity;
+    }
+
+    /**
+     * Stop accepting tasks, wait for the running ones up to the shutdown timeout, then interrupt the remaining ones
+     */
+    @Override
+    public void close() {
+        executors.values().forEach(ExecutorService::shutdown);
+        long deadline = System.nanoTime() + shutdownTimeout.toNanos();
+        try {
+            for (Map.Entry<Workload, ExecutorService> entry : executors.entrySet()) {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                if (!entry.getValue().awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                    log.warn("Pool " + entry.getKey().getPoolName() + " not drained in " + shutdownTimeout
+                            + ", interrupting its tasks");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executors.values().forEach(ExecutorService::shutdownNow);
+        }
+    }
+
+    /**
+     * One thread per reward pipeline worker, never running a worker on the caller.
+     * The workers of a closed pipeline release their threads asynchronously: the queue holds the workers
+     * of the next pipeline until then.
+     */
+    private static TourGuideProperties.Pool pipelinePool(TourGuideProperties properties) {
+        int workers = properties.getPipeline().getRewardWorkers();
+        TourGuideProperties.Pool pool = new TourGuideProperties.Pool(workers, workers);
+        pool.setRejectionPolicy(RejectionPolicy.ABORT);
+        return pool;
+    }
+
+    private static ExecutorService create(Workload workload, TourGuideProperties.Pool pool, boolean virtualThreads) {
+        if (virtualThreads && workload.blocking) {
+            // virtual threads are cheap: the concurrency is bounded by the client limiters, not by the pool
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(workload.getPoolName() + "-", 1).factory());
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(pool.getPoolSize(), pool.getPoolSize(),
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<>(pool.getQueueCapacity()),
+                threadFactory(workload.getPoolName()), rejectionHandler(pool.getRejectionPolicy()));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static ThreadFactory threadFactory(String poolName) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, poolName + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static RejectedExecutionHandler rejectionHandler(RejectionPolicy rejectionPolicy) {
+        if (rejectionPolicy == RejectionPolicy.CALLER_RUNS) {
+            // unlike ThreadPoolExecutor.CallerRunsPolicy, never drop the task silently once shut down:
+            // the caller may be waiting on its future
+            return (runnable, executor) -> {
+                if (executor.isShutdown()) {
+                    throw new RejectedExecutionException("Pool is shut down");
+                }
+                runnable.run();
+            };
+        }
+        return new ThreadPoolExecutor.AbortPolicy();
+    }
+}
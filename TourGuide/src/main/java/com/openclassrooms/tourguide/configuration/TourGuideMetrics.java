@@ -0,0 +1,167 @@
+package com.openclassrooms.tourguide.configuration;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * TourGuideMetrics times the hot paths of the application, one set of meters per operation:
+ * a "tourguide.operation.duration" timer tagged with the operation and its outcome, publishing a percentile
+ * histogram and the 50th, 95th and 99th percentiles, and a "tourguide.operation.in.flight" gauge.
+ * The meters are registered in the MeterRegistry exposed by actuator, see /actuator/metrics.
+ */
+public class TourGuideMetrics {
+    public static final String DURATION = "tourguide.operation.duration";
+    public static final String IN_FLIGHT = "tourguide.operation.in.flight";
+
+    /**
+     * Operations timed
+     */
+    public enum Operation {
+        TRACK_USER_LOCATION("trackUserLocation"),
+        CALCULATE_REWARDS("calculateRewards"),
+        GET_REWARD_POINTS("getRewardPoints"),
+        GET_TRIP_DEALS("getTripDeals"),
+        GET_NEAR_BY_ATTRACTIONS("getNearByAttractions");
+
+        private final String tagValue;
+
+        Operation(String tagValue) {
+            this.tagValue = tagValue;
+        }
+
+        public String getTagValue() {
+            return tagValue;
+        }
+    }
+
+    private final MeterRegistry registry;
+    private final Map<Operation, OperationMeters> operations = new EnumMap<>(Operation.class);
+
+    /**
+     * Constructor with a registry of its own, for services built outside of the application context
+     */
+    public TourGuideMetrics() {
+        this(new SimpleMeterRegistry());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param registry the registry the meters are published to
+     */
+    public TourGuideMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new OperationMeters(registry, operation));
+        }
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Time a call
+     *
+     * @param operation the operation the call belongs to
+     * @param call      the call
+     * @return the result of the call
+     */
+    public <T> T record(Operation operation, Supplier<T> call) {
+        OperationMeters meters = operations.get(operation);
+        long start = meters.start();
+        boolean failed = true;
+        try {
+            T result = call.get();
+            failed = false;
+            return result;
+        } finally {
+            meters.stop(start, failed);
+        }
+    }
+
+    /**
+     * Time a call without a result
+     *
+     * @param operation the operation the call belongs to
+     * @param call      the call
+     */
+    public void record(Operation operation, Runnable call) {
+        record(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Time an asynchronous call, from the call to the completion of its future
+     *
+     * @param operation the operation the call belongs to
+     * @param call      the call
+     * @return the future returned by the call
+     */
+    public <T> CompletableFuture<T> recordAsync(Operation operation, Supplier<CompletableFuture<T>> call) {
+        OperationMeters meters = operations.get(operation);
+        long start = meters.start();
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            meters.stop(start, true);
+            throw e;
+        }
+        if (future.isDone()) {
+            // a cache hit: no callback to allocate
+            meters.stop(start, future.isCompletedExceptionally());
+            return future;
+        }
+        return future.whenComplete((result, error) -> meters.stop(start, error != null));
+    }
+
+    /**
+     * Timers and in-flight count of an operation
+     */
+    private static final class OperationMeters {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Timer success;
+        private final Timer error;
+
+        private OperationMeters(MeterRegistry registry, Operation operation) {
+            this.success = timer(registry, operation, "success");
+            this.error = timer(registry, operation, "error");
+            Gauge.builder(IN_FLIGHT, inFlight, AtomicInteger::get)
+                    .description("Calls in progress")
+                    .tag("operation", operation.getTagValue())
+                    .register(registry);
+        }
+
+        private static Timer timer(MeterRegistry registry, Operation operation, String outcome) {
+            return Timer.builder(DURATION)
+                    .description("Duration of the calls")
+                    .tag("operation", operation.getTagValue())
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(registry);
+        }
+
+        private long start() {
+            inFlight.incrementAndGet();
+            return System.nanoTime();
+        }
+
+        private void stop(long start, boolean failed) {
+            (failed ? error : success).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            inFlight.decrementAndGet();
+        }
+    }
+}
@@ -1,31 +1,90 @@
 package com.openclassrooms.tourguide.configuration;
 
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import gpsUtil.GpsUtil;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.service.RewardLeaderboard;
+import com.openclassrooms.tourguide.service.RewardPointsCache;
+import com.openclassrooms.tourguide.service.RewardPointsCoalescer;
 import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
 
 /**
  * TourGuideModule is a Spring configuration class that defines beans for the application.
  */
 @Configuration
+@EnableConfigurationProperties(TourGuideProperties.class)
 public class TourGuideModule {
-	
+
 	@Bean
 	public GpsUtil getGpsUtil() {
 		return new GpsUtil();
 	}
-	
+
+	@Bean(destroyMethod = "close")
+	public AttractionCatalog getAttractionCatalog(TourGuideProperties properties) {
+		return new AttractionCatalog(getGpsUtil(), properties.getCatalog().getRefreshInterval());
+	}
+
+	@Bean
+	public RewardsService getRewardsService(AttractionCatalog attractionCatalog, RewardPointsCache rewardPointsCache,
+			TourGuideExecutors executors, TourGuideMetrics metrics) {
+		return new RewardsService(attractionCatalog, getRewardCentral(), rewardPointsCache,
+				executors.get(TourGuideExecutors.Workload.REWARDS), metrics);
+	}
+
 	@Bean
-	public RewardsService getRewardsService() {
-		return new RewardsService(getGpsUtil(), getRewardCentral());
+	public RewardLeaderboard getRewardLeaderboard(RewardsService rewardsService) {
+		return new RewardLeaderboard(rewardsService);
 	}
-	
+
 	@Bean
 	public RewardCentral getRewardCentral() {
 		return new RewardCentral();
 	}
-	
+
+	// the leaderboard listens to the rewards before the service restores them from the user store
+	@Bean(destroyMethod = "shutdown")
+	@DependsOn("getRewardLeaderboard")
+	public TourGuideService getTourGuideService(RewardsService rewardsService, TourGuideExecutors executors,
+			TourGuideProperties properties, TourGuideMetrics metrics, ClientLimiters limiters) {
+		return new TourGuideService(getGpsUtil(), rewardsService, executors, properties, metrics, limiters);
+	}
+
+	@Bean(destroyMethod = "close")
+	public RewardPointsCoalescer getRewardPointsCoalescer(TourGuideExecutors executors, TourGuideProperties properties,
+			ClientLimiters limiters) {
+		return new RewardPointsCoalescer(getRewardCentral(), limiters.get(ClientLimiters.Client.REWARD_CENTRAL),
+				properties.getRewards().getBatchWindow(), executors.get(TourGuideExecutors.Workload.REWARD_LOOKUPS));
+	}
+
+	@Bean
+	public RewardPointsCache getRewardPointsCache(RewardPointsCoalescer rewardPointsCoalescer,
+			TourGuideProperties properties) {
+		TourGuideProperties.Rewards rewards = properties.getRewards();
+		return new RewardPointsCache(rewardPointsCoalescer::getRewardPoints, rewards.getCacheMaxSize(),
+				rewards.getCacheTtl());
+	}
+
+	@Bean(destroyMethod = "close")
+	public TourGuideExecutors getTourGuideExecutors(TourGuideProperties properties) {
+		return new TourGuideExecutors(properties);
+	}
+
+	@Bean
+	public ClientLimiters getClientLimiters(TourGuideProperties properties) {
+		return new ClientLimiters(properties);
+	}
+
+	@Bean
+	public TourGuideMetrics getTourGuideMetrics(MeterRegistry meterRegistry) {
+		return new TourGuideMetrics(meterRegistry);
+	}
+
 }
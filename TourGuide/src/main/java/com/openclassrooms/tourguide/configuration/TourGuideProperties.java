@@ -0,0 +1,501 @@
+package com.openclassrooms.tourguide.configuration;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.helper.InternalUserGenerator;
+import com.openclassrooms.tourguide.service.RewardPipeline;
+import com.openclassrooms.tourguide.service.RewardPointsCache;
+import com.openclassrooms.tourguide.service.RewardPointsCoalescer;
+import com.openclassrooms.tourguide.service.TripDealsCache;
+import com.openclassrooms.tourguide.tracker.Tracker;
+import com.openclassrooms.tourguide.user.VisitedLocationHistory;
+
+/**
+ * TourGuideProperties holds the tuning settings of the application, bound from the "tourguide" prefix.
+ */
+@ConfigurationProperties(prefix = "tourguide")
+public class TourGuideProperties {
+
+	private final Rewards rewards = new Rewards();
+	private final Execution execution = new Execution();
+	private final ExecutorPools executors = new ExecutorPools();
+	private final Tracking tracking = new Tracking();
+	private final History history = new History();
+	private final Catalog catalog = new Catalog();
+	private final TripDeals tripDeals = new TripDeals();
+	private final Pipeline pipeline = new Pipeline();
+	private final Limits limits = new Limits();
+	private final InternalUsers internalUsers = new InternalUsers();
+	private final Store store = new Store();
+
+	public Rewards getRewards() {
+		return rewards;
+	}
+
+	public Execution getExecution() {
+		return execution;
+	}
+
+	public ExecutorPools getExecutors() {
+		return executors;
+	}
+
+	public Tracking getTracking() {
+		return tracking;
+	}
+
+	public History getHistory() {
+		return history;
+	}
+
+	public Catalog getCatalog() {
+		return catalog;
+	}
+
+	public TripDeals getTripDeals() {
+		return tripDeals;
+	}
+
+	public Pipeline getPipeline() {
+		return pipeline;
+	}
+
+	public Limits getLimits() {
+		return limits;
+	}
+
+	public InternalUsers getInternalUsers() {
+		return internalUsers;
+	}
+
+	public Store getStore() {
+		return store;
+	}
+
+	/**
+	 * Settings of the reward points lookups
+	 */
+	public static class Rewards {
+
+		// time spent collecting lookups before dispatching them
+		private Duration batchWindow = RewardPointsCoalescer.DEFAULT_BATCH_WINDOW;
+		// maximum number of (attraction, user) reward points kept in cache
+		private int cacheMaxSize = RewardPointsCache.DEFAULT_MAX_SIZE;
+		// time cached reward points are served before being looked up again
+		private Duration cacheTtl = RewardPointsCache.DEFAULT_TTL;
+
+		public Duration getBatchWindow() {
+			return batchWindow;
+		}
+
+		public void setBatchWindow(Duration batchWindow) {
+			this.batchWindow = batchWindow;
+		}
+
+		public int getCacheMaxSize() {
+			return cacheMaxSize;
+		}
+
+		public void setCacheMaxSize(int cacheMaxSize) {
+			this.cacheMaxSize = cacheMaxSize;
+		}
+
+		public Duration getCacheTtl() {
+			return cacheTtl;
+		}
+
+		public void setCacheTtl(Duration cacheTtl) {
+			this.cacheTtl = cacheTtl;
+		}
+	}
+
+	/**
+	 * Settings of the threads running the tracking and the reward lookups
+	 */
+	public static class Execution {
+
+		// run the blocking calls to gpsUtil and RewardCentral on virtual threads
+		private boolean virtualThreads = false;
+
+		public boolean isVirtualThreads() {
+			return virtualThreads;
+		}
+
+		public void setVirtualThreads(boolean virtualThreads) {
+			this.virtualThreads = virtualThreads;
+		}
+	}
+
+	/**
+	 * Settings of the pools created by TourGuideExecutors
+	 */
+	public static class ExecutorPools {
+
+		private final Pool tracking = new Pool(100, 10_000);
+		private final Pool rewards = new Pool(100, 10_000);
+		// a full pool fails the lookup: running it on the caller would block the coalescer dispatcher on the limiter
+		private final Pool rewardLookups = new Pool(RewardPointsCoalescer.DEFAULT_MAX_IN_FLIGHT, 10_000,
+				TourGuideExecutors.RejectionPolicy.ABORT);
+		private final Pool tripPricing = new Pool(20, 10_000);
+		// time given to the pools to drain their tasks when the application stops
+		private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+		public Pool getTracking() {
+			return tracking;
+		}
+
+		public Pool getRewards() {
+			return rewards;
+		}
+
+		public Pool getRewardLookups() {
+			return rewardLookups;
+		}
+
+		public Pool getTripPricing() {
+			return tripPricing;
+		}
+
+		public Duration getShutdownTimeout() {
+			return shutdownTimeout;
+		}
+
+		public void setShutdownTimeout(Duration shutdownTimeout) {
+			this.shutdownTimeout = shutdownTimeout;
+		}
+	}
+
+	/**
+	 * Settings of a bounded thread pool
+	 */
+	public static class Pool {
+
+		private int poolSize;
+		private int queueCapacity;
+		private TourGuideExecutors.RejectionPolicy rejectionPolicy = TourGuideExecutors.RejectionPolicy.CALLER_RUNS;
+
+		public Pool(int poolSize, int queueCapacity) {
+			this.poolSize = poolSize;
+			this.queueCapacity = queueCapacity;
+		}
+
+		public Pool(int poolSize, int queueCapacity, TourGuideExecutors.RejectionPolicy rejectionPolicy) {
+			this(poolSize, queueCapacity);
+			this.rejectionPolicy = rejectionPolicy;
+		}
+
+		public int getPoolSize() {
+			return poolSize;
+		}
+
+		public void setPoolSize(int poolSize) {
+			this.poolSize = poolSize;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public TourGuideExecutors.RejectionPolicy getRejectionPolicy() {
+			return rejectionPolicy;
+		}
+
+		public void setRejectionPolicy(TourGuideExecutors.RejectionPolicy rejectionPolicy) {
+			this.rejectionPolicy = rejectionPolicy;
+		}
+	}
+
+	/**
+	 * Settings of the Tracker schedule
+	 */
+	public static class Tracking {
+
+		// time between two locations of the same user
+		private Duration pollingInterval = Tracker.DEFAULT_POLLING_INTERVAL;
+		// number of shards tracked one after the other across the polling interval
+		private int shards = Tracker.DEFAULT_SHARD_COUNT;
+		// maximum number of users being tracked at once by trackUsersLocation
+		private int maxInFlight = 500;
+
+		public Duration getPollingInterval() {
+			return pollingInterval;
+		}
+
+		public void setPollingInterval(Duration pollingInterval) {
+			this.pollingInterval = pollingInterval;
+		}
+
+		public int getShards() {
+			return shards;
+		}
+
+		public void setShards(int shards) {
+			this.shards = shards;
+		}
+
+		public int getMaxInFlight() {
+			return maxInFlight;
+		}
+
+		public void setMaxInFlight(int maxInFlight) {
+			this.maxInFlight = maxInFlight;
+		}
+	}
+
+	/**
+	 * Retention of the visited locations of each user
+	 */
+	public static class History {
+
+		// number of most recent locations kept
+		private int recentCapacity = VisitedLocationHistory.Retention.DEFAULT.recentCapacity();
+		// number of older, down-sampled locations kept
+		private int archiveCapacity = VisitedLocationHistory.Retention.DEFAULT.archiveCapacity();
+		// one location out of archiveSampling is kept once it leaves the recent locations
+		private int archiveSampling = VisitedLocationHistory.Retention.DEFAULT.archiveSampling();
+
+		public int getRecentCapacity() {
+			return recentCapacity;
+		}
+
+		public void setRecentCapacity(int recentCapacity) {
+			this.recentCapacity = recentCapacity;
+		}
+
+		public int getArchiveCapacity() {
+			return archiveCapacity;
+		}
+
+		public void setArchiveCapacity(int archiveCapacity) {
+			this.archiveCapacity = archiveCapacity;
+		}
+
+		public int getArchiveSampling() {
+			return archiveSampling;
+		}
+
+		public void setArchiveSampling(int archiveSampling) {
+			this.archiveSampling = archiveSampling;
+		}
+
+		public VisitedLocationHistory.Retention toRetention() {
+			return new VisitedLocationHistory.Retention(recentCapacity, archiveCapacity, archiveSampling);
+		}
+	}
+
+	/**
+	 * Settings of the attraction catalog
+	 */
+	public static class Catalog {
+
+		// time between two background reloads of the attractions, zero to load them once
+		private Duration refreshInterval = AttractionCatalog.DEFAULT_REFRESH_INTERVAL;
+
+		public Duration getRefreshInterval() {
+			return refreshInterval;
+		}
+
+		public void setRefreshInterval(Duration refreshInterval) {
+			this.refreshInterval = refreshInterval;
+		}
+	}
+
+	/**
+	 * Settings of the trip deals cache
+	 */
+	public static class TripDeals {
+
+		// age after which cached deals are priced again in the background
+		private Duration refreshAfter = TripDealsCache.DEFAULT_REFRESH_AFTER;
+
+		public Duration getRefreshAfter() {
+			return refreshAfter;
+		}
+
+		public void setRefreshAfter(Duration refreshAfter) {
+			this.refreshAfter = refreshAfter;
+		}
+	}
+
+	/**
+	 * Settings of the reward stage of the location ingestion pipeline
+	 */
+	public static class Pipeline {
+
+		// maximum number of tracked users waiting for their rewards, the tracking blocks beyond
+		private int queueCapacity = RewardPipeline.DEFAULT_QUEUE_CAPACITY;
+		// number of users whose rewards are calculated at once, also the size of the reward-pipeline pool
+		private int rewardWorkers = RewardPipeline.DEFAULT_WORKERS;
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public int getRewardWorkers() {
+			return rewardWorkers;
+		}
+
+		public void setRewardWorkers(int rewardWorkers) {
+			this.rewardWorkers = rewardWorkers;
+		}
+	}
+
+	/**
+	 * Settings of the adaptive concurrency limiters in front of the external libraries
+	 */
+	public static class Limits {
+
+		private final Limit gpsUtil = new Limit(100, 10, 1_000);
+		private final Limit rewardCentral = new Limit(RewardPointsCoalescer.DEFAULT_MAX_IN_FLIGHT, 10, 1_000);
+		private final Limit tripPricer = new Limit(20, 2, 200);
+
+		public Limit getGpsUtil() {
+			return gpsUtil;
+		}
+
+		public Limit getRewardCentral() {
+			return rewardCentral;
+		}
+
+		public Limit getTripPricer() {
+			return tripPricer;
+		}
+	}
+
+	/**
+	 * Settings of one adaptive concurrency limiter
+	 */
+	public static class Limit {
+
+		// concurrent calls allowed before any latency is observed
+		private int initialLimit;
+		// bounds of the limit
+		private int minLimit;
+		private int maxLimit;
+		// time a caller waits for a permit before being rejected
+		private Duration maxWait = AdaptiveConcurrencyLimiter.DEFAULT_MAX_WAIT;
+		// the limit backs off when the recent latency exceeds the long-term latency by this ratio
+		private double latencyTolerance = AdaptiveConcurrencyLimiter.DEFAULT_LATENCY_TOLERANCE;
+
+		public Limit(int initialLimit, int minLimit, int maxLimit) {
+			this.initialLimit = initialLimit;
+			this.minLimit = minLimit;
+			this.maxLimit = maxLimit;
+		}
+
+		public int getInitialLimit() {
+			return initialLimit;
+		}
+
+		public void setInitialLimit(int initialLimit) {
+			this.initialLimit = initialLimit;
+		}
+
+		public int getMinLimit() {
+			return minLimit;
+		}
+
+		public void setMinLimit(int minLimit) {
+			this.minLimit = minLimit;
+		}
+
+		public int getMaxLimit() {
+			return maxLimit;
+		}
+
+		public void setMaxLimit(int maxLimit) {
+			this.maxLimit = maxLimit;
+		}
+
+		public Duration getMaxWait() {
+			return maxWait;
+		}
+
+		public void setMaxWait(Duration maxWait) {
+			this.maxWait = maxWait;
+		}
+
+		public double getLatencyTolerance() {
+			return latencyTolerance;
+		}
+
+		public void setLatencyTolerance(double latencyTolerance) {
+			this.latencyTolerance = latencyTolerance;
+		}
+	}
+
+	/**
+	 * Settings of the internal test users, generated in test mode
+	 */
+	public static class InternalUsers {
+
+		// when the users are generated: eager, lazy or background
+		private InternalUserGenerator.Mode generation = InternalUserGenerator.Mode.EAGER;
+		// seed of the users, a random one when not set
+		private Long seed;
+
+		public InternalUserGenerator.Mode getGeneration() {
+			return generation;
+		}
+
+		public void setGeneration(InternalUserGenerator.Mode generation) {
+			this.generation = generation;
+		}
+
+		public Long getSeed() {
+			return seed;
+		}
+
+		public void setSeed(Long seed) {
+			this.seed = seed;
+		}
+	}
+
+	/**
+	 * Settings of the persistent user store
+	 */
+	public static class Store {
+
+		// save the users to the directory and restore them at startup
+		private boolean enabled = false;
+		// directory of the snapshot and of the logs
+		private String directory = "data/users";
+		// time between two snapshots, the changes in between being logged
+		private Duration snapshotInterval = Duration.ofMinutes(5);
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public String getDirectory() {
+			return directory;
+		}
+
+		public void setDirectory(String directory) {
+			this.directory = directory;
+		}
+
+		public Duration getSnapshotInterval() {
+			return snapshotInterval;
+		}
+
+		public void setSnapshotInterval(Duration snapshotInterval) {
+			this.snapshotInterval = snapshotInterval;
+		}
+	}
+}
@@ -2,7 +2,9 @@ package com.openclassrooms.tourguide.controller;
 
 import java.util.List;
 
+import com.openclassrooms.tourguide.dto.AttractionRewardsDto;
 import com.openclassrooms.tourguide.dto.NearByAttractionsDto;
+import com.openclassrooms.tourguide.dto.UserRankingDto;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -10,6 +12,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import gpsUtil.location.VisitedLocation;
 
+import com.openclassrooms.tourguide.service.RewardLeaderboard;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
@@ -24,6 +27,9 @@ public class TourGuideController {
 
 	@Autowired
 	TourGuideService tourGuideService;
+
+	@Autowired
+	RewardLeaderboard rewardLeaderboard;
 	
     @RequestMapping("/")
     public String index() {
@@ -51,6 +57,16 @@ public class TourGuideController {
     	return tourGuideService.getTripDeals(getUser(userName));
     }
     
+    @RequestMapping("/getTopUsers")
+    public List<UserRankingDto> getTopUsers(@RequestParam(defaultValue = "10") int limit) {
+        return rewardLeaderboard.getTopUsers(limit);
+    }
+
+    @RequestMapping("/getTopAttractions")
+    public List<AttractionRewardsDto> getTopAttractions(@RequestParam(defaultValue = "10") int limit) {
+        return rewardLeaderboard.getTopAttractions(limit);
+    }
+
     private User getUser(String userName) {
     	return tourGuideService.getUser(userName);
     }
@@ -0,0 +1,47 @@
+package com.openclassrooms.tourguide.dto;
+
+/**
+ * This class represents the rewards given for an attraction.
+ */
+public class AttractionRewardsDto {
+
+    private String attractionName;
+    private long rewardCount;
+    private long rewardPoints;
+
+    /**
+     * Constructor
+     * @param attractionName attraction name
+     * @param rewardCount number of users rewarded for the attraction
+     * @param rewardPoints reward points given for the attraction
+     */
+    public AttractionRewardsDto(String attractionName, long rewardCount, long rewardPoints) {
+        this.attractionName = attractionName;
+        this.rewardCount = rewardCount;
+        this.rewardPoints = rewardPoints;
+    }
+
+    public String getAttractionName() {
+        return attractionName;
+    }
+
+    public void setAttractionName(String attractionName) {
+        this.attractionName = attractionName;
+    }
+
+    public long getRewardCount() {
+        return rewardCount;
+    }
+
+    public void setRewardCount(long rewardCount) {
+        this.rewardCount = rewardCount;
+    }
+
+    public long getRewardPoints() {
+        return rewardPoints;
+    }
+
+    public void setRewardPoints(long rewardPoints) {
+        this.rewardPoints = rewardPoints;
+    }
+}
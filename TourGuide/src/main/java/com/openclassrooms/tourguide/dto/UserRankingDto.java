@@ -0,0 +1,47 @@
+package com.openclassrooms.tourguide.dto;
+
+/**
+ * This class represents the position of a user in the reward points ranking.
+ */
+public class UserRankingDto {
+
+    private int rank;
+    private String userName;
+    private int rewardPoints;
+
+    /**
+     * Constructor
+     * @param rank rank of the user, starting at 1
+     * @param userName user name
+     * @param rewardPoints reward points total of the user
+     */
+    public UserRankingDto(int rank, String userName, int rewardPoints) {
+        this.rank = rank;
+        this.userName = userName;
+        this.rewardPoints = rewardPoints;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public void setRank(int rank) {
+        this.rank = rank;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    public int getRewardPoints() {
+        return rewardPoints;
+    }
+
+    public void setRewardPoints(int rewardPoints) {
+        this.rewardPoints = rewardPoints;
+    }
+}
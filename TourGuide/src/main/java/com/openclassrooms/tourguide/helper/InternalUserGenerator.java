@@ -0,0 +1,119 @@
+package com.openclassrooms.tourguide.helper;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.VisitedLocationHistory;
+
+/**
+ * Generator of the internal test users, each one with a few random visited locations from the last 30 days.
+ * Users are generated in parallel by chunks of CHUNK_SIZE, each chunk drawing from its own SplittableRandom
+ * split from the seed: the users only depend on the seed and their index, whatever the number of threads.
+ */
+public class InternalUserGenerator {
+    public static final int CHUNK_SIZE = 4096;
+
+    private static final int HISTORY_LENGTH = 3;
+    private static final int MAX_DAYS_AGO = 30;
+    private static final long DAY_MILLIS = Duration.ofDays(1).toMillis();
+    private static final double MAX_LATITUDE = 85.05112878;
+    private static final double MAX_LONGITUDE = 180;
+
+    /**
+     * When the internal users are generated
+     */
+    public enum Mode {
+        // in the TourGuideService constructor, which returns once they are all registered
+        EAGER,
+        // on the first access to the users, which waits for them
+        LAZY,
+        // in the background from startup, the users being registered chunk by chunk
+        BACKGROUND
+    }
+
+    private final long seed;
+    private final VisitedLocationHistory.Retention retention;
+    private final long nowMillis;
+
+    /**
+     * Constructor
+     *
+     * @param seed      the seed of the users
+     * @param retention how many visited locations the users keep
+     */
+    public InternalUserGenerator(long seed, VisitedLocationHistory.Retention retention) {
+        this(seed, retention, Instant.now());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param seed      the seed of the users
+     * @param retention how many visited locations the users keep
+     * @param now       the time the visited locations are dated back from
+     */
+    public InternalUserGenerator(long seed, VisitedLocationHistory.Retention retention, Instant now) {
+        this.seed = seed;
+        this.retention = retention;
+        this.nowMillis = now.toEpochMilli();
+    }
+
+    /**
+     * Generate users named internalUser0 to internalUser{count - 1}, handing them over chunk by chunk
+     * Each chunk is a task of the executor: the sink is called concurrently, in no particular order.
+     *
+     * @param count    the number of users
+     * @param sink     receives each chunk of users, in index order within the chunk
+     * @param executor the executor generating the chunks, see TourGuideExecutors.Workload.INTERNAL_USERS
+     * @return a future completed once every chunk has been handed over
+     */
+    public CompletableFuture<Void> generate(int count, Consumer<List<User>> sink, Executor executor) {
+        int chunkCount = (count + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        // split sequentially, so that each chunk gets the same random whatever the scheduling
+        SplittableRandom root = new SplittableRandom(seed);
+        CompletableFuture<?>[] chunks = new CompletableFuture<?>[chunkCount];
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int from = chunk * CHUNK_SIZE;
+            int to = Math.min(count, from + CHUNK_SIZE);
+            SplittableRandom random = root.split();
+            chunks[chunk] = CompletableFuture.runAsync(() -> sink.accept(generateChunk(from, to, random)), executor);
+        }
+        return CompletableFuture.allOf(chunks);
+    }
+
+    private List<User> generateChunk(int from, int to, SplittableRandom random) {
+        List<User> users = new ArrayList<>(to - from);
+        for (int index = from; index < to; index++) {
+            users.add(generateUser(index, random));
+        }
+        return users;
+    }
+
+    private User generateUser(int index, SplittableRandom random) {
+        String userName = "internalUser" + index;
+        User user = new User(randomUuid(random), userName, "000", userName + "@tourGuide.com", retention);
+        for (int i = 0; i < HISTORY_LENGTH; i++) {
+            user.addToVisitedLocations(random.nextDouble(-MAX_LATITUDE, MAX_LATITUDE),
+                    random.nextDouble(-MAX_LONGITUDE, MAX_LONGITUDE),
+                    nowMillis - random.nextInt(MAX_DAYS_AGO) * DAY_MILLIS);
+        }
+        return user;
+    }
+
+    /**
+     * Random version 4 UUID, without the cost of the SecureRandom behind UUID.randomUUID
+     */
+    private static UUID randomUuid(SplittableRandom random) {
+        long mostSignificantBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSignificantBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+}
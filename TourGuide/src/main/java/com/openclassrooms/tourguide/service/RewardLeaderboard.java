@@ -0,0 +1,123 @@
+package com.openclassrooms.tourguide.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.openclassrooms.tourguide.dto.AttractionRewardsDto;
+import com.openclassrooms.tourguide.dto.UserRankingDto;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+/**
+ * Reward aggregates maintained incrementally as rewards are added.
+ * Users are ranked by reward points total in a concurrent skip list, so the top N users are read
+ * without scanning the population; rewards per attraction are counted in LongAdders.
+ * Only the rewards added through RewardsService are counted.
+ */
+public class RewardLeaderboard {
+
+    private record Rank(int rewardPoints, UUID userId, String userName) {
+    }
+
+    private static final Comparator<Rank> BY_POINTS_DESCENDING = Comparator.comparingInt(Rank::rewardPoints)
+            .reversed()
+            .thenComparing(Rank::userId);
+
+    private final ConcurrentSkipListSet<Rank> ranking = new ConcurrentSkipListSet<>(BY_POINTS_DESCENDING);
+    // current rank of each user, the key of the user in the ranking
+    private final ConcurrentMap<UUID, Rank> ranks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AttractionCounter> attractions = new ConcurrentHashMap<>();
+
+    public RewardLeaderboard() {
+    }
+
+    /**
+     * Constructor of a leaderboard fed by the rewards added by a RewardsService
+     *
+     * @param rewardsService the rewards service
+     */
+    public RewardLeaderboard(RewardsService rewardsService) {
+        rewardsService.addRewardListener(this::onReward);
+    }
+
+    /**
+     * Record a reward added to a user
+     * The rank of the user is set to the current reward points total of the user,
+     * so concurrent updates of the same user converge to the latest total.
+     *
+     * @param user       the user
+     * @param userReward the reward added
+     */
+    public void onReward(User user, UserReward userReward) {
+        ranks.compute(user.getUserId(), (userId, previous) -> {
+            Rank next = new Rank(user.getRewardPointsTotal(), userId, user.getUserName());
+            if (previous != null) {
+                ranking.remove(previous);
+            }
+            ranking.add(next);
+            return next;
+        });
+        attractions.computeIfAbsent(userReward.attraction.attractionName, name -> new AttractionCounter())
+                .add(userReward.getRewardPoints());
+    }
+
+    /**
+     * Get the users with the most reward points
+     * A user whose rank is being updated may be missing from the result.
+     *
+     * @param limit the maximum number of users
+     * @return the users, best first
+     */
+    public List<UserRankingDto> getTopUsers(int limit) {
+        List<UserRankingDto> topUsers = new ArrayList<>(Math.max(0, Math.min(limit, 100)));
+        Iterator<Rank> iterator = ranking.iterator();
+        while (topUsers.size() < limit && iterator.hasNext()) {
+            Rank rank = iterator.next();
+            topUsers.add(new UserRankingDto(topUsers.size() + 1, rank.userName(), rank.rewardPoints()));
+        }
+        return topUsers;
+    }
+
+    /**
+     * Get the attractions rewarded to the most users
+     *
+     * @param limit the maximum number of attractions
+     * @return the attractions, most rewarded first
+     */
+    public List<AttractionRewardsDto> getTopAttractions(int limit) {
+        return attractions.entrySet().stream()
+                .map(entry -> new AttractionRewardsDto(entry.getKey(), entry.getValue().rewardCount.sum(),
+                        entry.getValue().rewardPoints.sum()))
+                .sorted(Comparator.comparingLong(AttractionRewardsDto::getRewardCount)
+                        .thenComparingLong(AttractionRewardsDto::getRewardPoints)
+                        .reversed())
+                .limit(Math.max(0, limit))
+                .toList();
+    }
+
+    /**
+     * Get the number of ranked users
+     *
+     * @return the number of users with at least one reward
+     */
+    public int size() {
+        return ranks.size();
+    }
+
+    private static final class AttractionCounter {
+        private final LongAdder rewardCount = new LongAdder();
+        private final LongAdder rewardPoints = new LongAdder();
+
+        private void add(int points) {
+            rewardCount.increment();
+            rewardPoints.add(points);
+        }
+    }
+}
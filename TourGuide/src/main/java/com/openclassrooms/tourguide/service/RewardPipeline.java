@@ -0,0 +1,180 @@
+package com.openclassrooms.tourguide.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.openclassrooms.tourguide.user.User;
+
+/**
+ * Reward stage of the location ingestion pipeline.
+ * The tracking stage submits the users who got a new location to a bounded queue, and a fixed set of workers,
+ * each one a long-running task of the given executor, calculates their rewards. When the queue is full, submit blocks:
+ * the tracking stage slows down to the reward throughput instead of piling up work.
+ * A user already waiting in the queue is not queued twice: its pass will evaluate every new location.
+ * Users still queued on close are dropped without being rewarded. Their new locations stay unpolled,
+ * so the next reward pass of the user, after its next tracked location, evaluates them too.
+ */
+public class RewardPipeline implements AutoCloseable {
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    public static final int DEFAULT_WORKERS = 50;
+
+    private static final Logger log = LoggerFactory.getLogger(RewardPipeline.class);
+
+    private final RewardsService rewardsService;
+    private final BlockingQueue<User> queue;
+    private final int queueCapacity;
+    private final Set<UUID> queuedUsers = ConcurrentHashMap.newKeySet();
+    private final List<Future<?>> workers = new ArrayList<>();
+    // events accepted and not processed yet, guarded by itself for awaitIdle
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor with the default queue capacity and number of workers
+     *
+     * @param rewardsService the rewards service
+     * @param executor       the pool running the workers, see TourGuideExecutors.Workload.REWARD_PIPELINE
+     */
+    public RewardPipeline(RewardsService rewardsService, ExecutorService executor) {
+        this(rewardsService, executor, DEFAULT_QUEUE_CAPACITY, DEFAULT_WORKERS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param rewardsService the rewards service
+     * @param executor       the pool running the workers, with room for workerCount long-running tasks,
+     *                       see TourGuideExecutors.Workload.REWARD_PIPELINE
+     * @param queueCapacity  the maximum number of users waiting for their rewards
+     * @param workerCount    the number of users whose rewards are calculated at once
+     */
+    public RewardPipeline(RewardsService rewardsService, ExecutorService executor, int queueCapacity,
+                          int workerCount) {
+        this.rewardsService = rewardsService;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.queueCapacity = queueCapacity;
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(executor.submit(this::work));
+        }
+    }
+
+    /**
+     * Queue the reward calculation of a user, blocking while the queue is full
+     * A user submitted while the pipeline closes is dropped like the users already queued.
+     *
+     * @param user the user who got a new location
+     * @throws InterruptedException  if interrupted while waiting for room in the queue
+     * @throws IllegalStateException if the pipeline is closed
+     */
+    public void submit(User user) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Reward pipeline closed");
+        }
+        if (!queuedUsers.add(user.getUserId())) {
+            return;
+        }
+        pending.incrementAndGet();
+        try {
+            queue.put(user);
+        } catch (InterruptedException e) {
+            queuedUsers.remove(user.getUserId());
+            done();
+            throw e;
+        }
+        // close may have drained the queue before the put: drop the user as the drain would have
+        if (closed && queue.remove(user)) {
+            queuedUsers.remove(user.getUserId());
+            done();
+        }
+    }
+
+    /**
+     * Wait until every submitted user has been processed
+     *
+     * @param timeout the maximum time to wait
+     * @return true if the pipeline is idle, false if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitIdle(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        synchronized (pending) {
+            while (pending.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(pending, remaining);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of users waiting for their rewards
+     *
+     * @return the queue size
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Stop the workers, dropping the queued users
+     * A reward pass already running is interrupted, its user being evaluated again on its next pass.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        workers.forEach(worker -> worker.cancel(true));
+        User user;
+        while ((user = queue.poll()) != null) {
+            queuedUsers.remove(user.getUserId());
+            done();
+        }
+    }
+
+    private void work() {
+        while (!closed) {
+            User user;
+            try {
+                user = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            // locations added from now on need a new event
+            queuedUsers.remove(user.getUserId());
+            try {
+                rewardsService.calculateRewards(user);
+            } catch (RuntimeException e) {
+                log.error("Failed to calculate the rewards of user " + user.getUserName(), e);
+            } finally {
+                done();
+            }
+        }
+    }
+
+    private void done() {
+        if (pending.decrementAndGet() == 0) {
+            synchronized (pending) {
+                pending.notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.openclassrooms.tourguide.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of the reward points of an (attraction, user) pair.
+ * Entries expire after a time-to-live, and the least recently used entries are evicted beyond maxSize.
+ * Entries are held in a ConcurrentHashMap, so that a hit takes no lock. Recency is approximate: it is counted
+ * in loads, an entry hit since the last load ranking with the entries hit since then, after every entry
+ * loaded before. Beyond maxSize, one thread at a time evicts the least recent entries in a batch,
+ * down to 1/EVICTION_BATCH below maxSize, so that the cost of sorting the entries is shared by many loads.
+ * Loads are single-flight: concurrent misses on the same key share one call to the loader,
+ * and a failed load is not cached.
+ */
+public class RewardPointsCache {
+    public static final int DEFAULT_MAX_SIZE = 100_000;
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+
+    private static final int EVICTION_BATCH = 16;
+
+    private final BiFunction<UUID, UUID, CompletableFuture<Integer>> loader;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier nanoClock;
+    private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    // incremented by 2 on each load: a load stamps its entry with the new value, a hit with the value + 1
+    private final AtomicLong recency = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Constructor with the default size and time-to-live
+     *
+     * @param coalescer the lookups layer loading the missing points
+     */
+    public RewardPointsCache(RewardPointsCoalescer coalescer) {
+        this(coalescer::getRewardPoints, DEFAULT_MAX_SIZE, DEFAULT_TTL);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param loader  the function loading the points of an (attractionId, userId) pair
+     * @param maxSize the maximum number of entries
+     * @param ttl     the time an entry is served after being loaded
+     */
+    public RewardPointsCache(BiFunction<UUID, UUID, CompletableFuture<Integer>> loader, int maxSize, Duration ttl) {
+        this(loader, maxSize, ttl, System::nanoTime);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param loader    the function loading the points of an (attractionId, userId) pair
+     * @param maxSize   the maximum number of entries
+     * @param ttl       the time an entry is served after being loaded
+     * @param nanoClock the clock measuring the time-to-live, in nanoseconds
+     */
+    public RewardPointsCache(BiFunction<UUID, UUID, CompletableFuture<Integer>> loader, int maxSize, Duration ttl,
+                             LongSupplier nanoClock) {
+        this.loader = loader;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Get the reward points of an attraction for a user, loading them on a miss
+     *
+     * @param attractionId the attraction id
+     * @param userId       the user id
+     * @return a future completed with the reward points
+     */
+    public CompletableFuture<Integer> getRewardPoints(UUID attractionId, UUID userId) {
+        Key key = new Key(attractionId, userId);
+        long now = nanoClock.getAsLong();
+        Entry entry = entries.get(key);
+        if (entry == null || entry.isExpired(now)) {
+            Entry created = new Entry(now + ttlNanos);
+            // as recent as a hit until stamped by its load, should an eviction run in between
+            created.lastAccess = recency.get() + 1;
+            // single-flight: only the thread whose entry is stored loads it
+            entry = entries.compute(key, (ignored, current) ->
+                    current == null || current.isExpired(now) ? created : current);
+            if (entry == created) {
+                misses.increment();
+                created.lastAccess = recency.addAndGet(2);
+                load(key, created);
+                if (entries.size() > maxSize) {
+                    evict();
+                }
+                return created.points.copy();
+            }
+        }
+        hits.increment();
+        long hitStamp = recency.get() + 1;
+        // written only once per entry between two loads, so that hits stay reads
+        if (entry.lastAccess != hitStamp) {
+            entry.lastAccess = hitStamp;
+        }
+        return entry.points.copy();
+    }
+
+    /**
+     * Evict the least recently used entries, down to 1/EVICTION_BATCH below maxSize
+     * Skipped while another thread is evicting.
+     */
+    private void evict() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int excess = entries.size() - (maxSize - maxSize / EVICTION_BATCH);
+            if (excess <= 0) {
+                return;
+            }
+            List<Map.Entry<Key, Entry>> candidates = new ArrayList<>(entries.entrySet());
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.getValue().lastAccess));
+            for (int i = 0; i < excess && i < candidates.size(); i++) {
+                if (entries.remove(candidates.get(i).getKey(), candidates.get(i).getValue())) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void load(Key key, Entry entry) {
+        CompletableFuture<Integer> loaded;
+        try {
+            loaded = loader.apply(key.attractionId, key.userId);
+        } catch (RuntimeException e) {
+            loaded = CompletableFuture.failedFuture(e);
+        }
+        loaded.whenComplete((points, error) -> {
+            if (error != null) {
+                entries.remove(key, entry);
+                entry.points.completeExceptionally(error);
+            } else {
+                entry.points.complete(points);
+            }
+        });
+    }
+
+    /**
+     * Remove every entry
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private record Key(UUID attractionId, UUID userId) {
+    }
+
+    /**
+     * Points being loaded or loaded, the time they expire at, and their recency
+     */
+    private static final class Entry {
+        private final CompletableFuture<Integer> points = new CompletableFuture<>();
+        private final long expiresAt;
+        private volatile long lastAccess;
+
+        private Entry(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return expiresAt - now <= 0;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.openclassrooms.tourguide.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.configuration.AdaptiveConcurrencyLimiter;
+
+/**
+ * Coalescing layer in front of RewardCentral.
+ * Lookups are collected over a short window, and identical (attraction, user) keys share the same pending result:
+ * each distinct key of the window is then looked up once, by its own call, within the concurrency limit
+ * of RewardCentral. The window only deduplicates the lookups, it does not merge them into fewer calls.
+ * Each lookup waits for its permit on the dispatch executor: the dispatcher thread never blocks on the limit,
+ * so a lookup waiting for a permit does not hold back the next windows.
+ */
+public class RewardPointsCoalescer implements AutoCloseable {
+    public static final int DEFAULT_MAX_IN_FLIGHT = 100;
+    public static final Duration DEFAULT_BATCH_WINDOW = Duration.ofMillis(2);
+
+    private static final Logger log = LoggerFactory.getLogger(RewardPointsCoalescer.class);
+    private static final AtomicInteger instanceCount = new AtomicInteger();
+
+    private final RewardCentral rewardCentral;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final long batchWindowNanos;
+    private final ConcurrentMap<Key, CompletableFuture<Integer>> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<Key> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService dispatchExecutor;
+    private final boolean ownsDispatchExecutor;
+    private final Thread dispatcher;
+    private volatile boolean closed = false;
+
+    /**
+     * Constructor with the default in-flight limit and batch window
+     *
+     * @param rewardCentral the rewards central
+     */
+    public RewardPointsCoalescer(RewardCentral rewardCentral) {
+        this(rewardCentral, DEFAULT_MAX_IN_FLIGHT, DEFAULT_BATCH_WINDOW);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param rewardCentral the rewards central
+     * @param maxInFlight   the maximum number of concurrent calls to RewardCentral
+     * @param batchWindow   the time spent collecting lookups before dispatching them
+     */
+    public RewardPointsCoalescer(RewardCentral rewardCentral, int maxInFlight, Duration batchWindow) {
+        this(rewardCentral, cappedLimiter(maxInFlight), batchWindow, newDispatchExecutor(), true);
+    }
+
+    /**
+     * Constructor
+     * RewardCentral calls and the waits for a permit block: the dispatch executor should not bound the concurrency
+     * itself, the in-flight limit does, nor run a task on the caller, which would block the dispatcher thread:
+     * a lookup it rejects fails. The executor is shared: close() does not shut it down.
+     *
+     * @param rewardCentral    the rewards central
+     * @param maxInFlight      the maximum number of concurrent calls to RewardCentral
+     * @param batchWindow      the time spent collecting lookups before dispatching them
+     * @param dispatchExecutor the executor running the calls to RewardCentral
+     */
+    public RewardPointsCoalescer(RewardCentral rewardCentral, int maxInFlight, Duration batchWindow,
+                                 ExecutorService dispatchExecutor) {
+        this(rewardCentral, cappedLimiter(maxInFlight), batchWindow, dispatchExecutor, false);
+    }
+
+    /**
+     * Constructor
+     * The concurrency of the calls to RewardCentral follows the limiter, adjusted from their latency.
+     * The executor is shared: close() does not shut it down.
+     *
+     * @param rewardCentral    the rewards central
+     * @param limiter          the concurrency limiter of the calls to RewardCentral
+     * @param batchWindow      the time spent collecting lookups before dispatching them
+     * @param dispatchExecutor the executor running the calls to RewardCentral
+     */
+    public RewardPointsCoalescer(RewardCentral rewardCentral, AdaptiveConcurrencyLimiter limiter,
+                                 Duration batchWindow, ExecutorService dispatchExecutor) {
+        this(rewardCentral, limiter, batchWindow, dispatchExecutor, false);
+    }
+
+    private RewardPointsCoalescer(RewardCentral rewardCentral, AdaptiveConcurrencyLimiter limiter,
+                                  Duration batchWindow, ExecutorService dispatchExecutor,
+                                  boolean ownsDispatchExecutor) {
+        this.ownsDispatchExecutor = ownsDispatchExecutor;
+        this.rewardCentral = rewardCentral;
+        this.limiter = limiter;
+        this.batchWindowNanos = batchWindow.toNanos();
+        this.dispatchExecutor = dispatchExecutor;
+        this.dispatcher = new Thread(this::dispatchLoop, "reward-points-dispatcher-" + instanceCount.incrementAndGet());
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    private static AdaptiveConcurrencyLimiter cappedLimiter(int maxInFlight) {
+        // the limit may back off under latency, but never grows beyond maxInFlight
+        return new AdaptiveConcurrencyLimiter("rewardCentral", maxInFlight, 1, maxInFlight,
+                AdaptiveConcurrencyLimiter.DEFAULT_MAX_WAIT, AdaptiveConcurrencyLimiter.DEFAULT_LATENCY_TOLERANCE,
+                System::nanoTime);
+    }
+
+    private static ExecutorService newDispatchExecutor() {
+        AtomicInteger workerCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "reward-points-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Get the reward points of an attraction for a user
+     * The lookup is merged with any pending lookup for the same attraction and user.
+     *
+     * @param attractionId the attraction id
+     * @param userId       the user id
+     * @return a future completed with the reward points, or failed with an IllegalStateException once closed
+     */
+    public CompletableFuture<Integer> getRewardPoints(UUID attractionId, UUID userId) {
+        if (closed) {
+            return CompletableFuture.failedFuture(closedException());
+        }
+        Key key = new Key(attractionId, userId);
+        CompletableFuture<Integer> result = pending.get(key);
+        if (result == null) {
+            CompletableFuture<Integer> created = new CompletableFuture<>();
+            result = pending.putIfAbsent(key, created);
+            if (result == null) {
+                result = created;
+                queue.add(key);
+                // close may have failed the pending lookups before this one was added
+                if (closed) {
+                    pending.remove(key, created);
+                    created.completeExceptionally(closedException());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the concurrency limiter of the calls to RewardCentral
+     *
+     * @return the limiter
+     */
+    public AdaptiveConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Get the number of lookups waiting for a result
+     *
+     * @return the number of pending lookups
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Collect the queued keys over the batch window, then hand them over to the dispatch executor
+     */
+    private void dispatchLoop() {
+        List<Key> batch = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + batchWindowNanos;
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    Key key = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (key == null) {
+                        break;
+                    }
+                    batch.add(key);
+                }
+                queue.drainTo(batch);
+
+                for (Key key : batch) {
+                    dispatch(key);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.debug("Reward points dispatcher stopping");
+    }
+
+    /**
+     * Look up the points of a key within the concurrency limit, on the dispatch executor
+     * The lookup fails when the dispatch executor rejects it, or when no permit is available after the maximum wait
+     * of the limiter.
+     */
+    private void dispatch(Key key) {
+        CompletableFuture<Integer> result = pending.get(key);
+        if (result == null) {
+            // failed by close
+            return;
+        }
+        try {
+            dispatchExecutor.execute(() -> {
+                try {
+                    result.complete(limiter.call(() ->
+                            rewardCentral.getAttractionRewardPoints(key.attractionId(), key.userId())));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    pending.remove(key, result);
+                }
+            });
+        } catch (RuntimeException e) {
+            pending.remove(key, result);
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Stop the dispatcher, and fail and forget the pending lookups
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        if (ownsDispatchExecutor) {
+            dispatchExecutor.shutdown();
+        }
+        IllegalStateException exception = closedException();
+        for (Key key : pending.keySet()) {
+            CompletableFuture<Integer> result = pending.remove(key);
+            if (result != null) {
+                result.completeExceptionally(exception);
+            }
+        }
+    }
+
+    private static IllegalStateException closedException() {
+        return new IllegalStateException("RewardPointsCoalescer is closed");
+    }
+
+    private record Key(UUID attractionId, UUID userId) {
+    }
+}
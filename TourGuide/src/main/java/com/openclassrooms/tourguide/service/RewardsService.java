@@ -1,28 +1,36 @@
 package com.openclassrooms.tourguide.service;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.FunctionCounter;
 import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.attraction.AttractionOrdinals;
+import com.openclassrooms.tourguide.configuration.TourGuideExecutors;
+import com.openclassrooms.tourguide.configuration.TourGuideMetrics;
+import com.openclassrooms.tourguide.user.LocationColumns;
 import com.openclassrooms.tourguide.user.User;
 import com.openclassrooms.tourguide.user.UserReward;
+import com.openclassrooms.tourguide.user.VisitedLocationHistory;
 
 /**
  * RewardsService class
  */
-@Service
 public class RewardsService {
     private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
     private static final Logger log = LoggerFactory.getLogger(RewardsService.class);
@@ -31,22 +39,86 @@ public class RewardsService {
     private int defaultProximityBuffer = 10;
     private int proximityBuffer = defaultProximityBuffer;
     private int attractionProximityRange = 200;
-    private final GpsUtil gpsUtil;
+    private final AttractionCatalog attractionCatalog;
     private final RewardCentral rewardsCentral;
-
-    private volatile List<Attraction> cachedAttractions = null;
-
-    private final ExecutorService executorService = Executors.newFixedThreadPool(100);
+    private final RewardPointsCache rewardPointsCache;
+    private final ExecutorService rewardsExecutor;
+    private final TourGuideMetrics metrics;
+    private final List<BiConsumer<User, UserReward>> rewardListeners = new CopyOnWriteArrayList<>();
+    // created by the convenience constructor, closed by shutdown in this order
+    private final List<AutoCloseable> ownedResources;
 
     /**
      * Constructor
+     * The pools and the coalescer it creates are closed by shutdown.
      *
      * @param gpsUtil       the GPS utility
      * @param rewardCentral the rewards central
      */
     public RewardsService(GpsUtil gpsUtil, RewardCentral rewardCentral) {
-        this.gpsUtil = gpsUtil;
+        TourGuideExecutors executors = new TourGuideExecutors();
+        RewardPointsCoalescer rewardPointsCoalescer = new RewardPointsCoalescer(rewardCentral,
+                RewardPointsCoalescer.DEFAULT_MAX_IN_FLIGHT, RewardPointsCoalescer.DEFAULT_BATCH_WINDOW,
+                executors.get(TourGuideExecutors.Workload.REWARD_LOOKUPS));
+        this.ownedResources = List.of(rewardPointsCoalescer, executors);
+        this.attractionCatalog = new AttractionCatalog(gpsUtil);
+        this.rewardsCentral = rewardCentral;
+        this.rewardPointsCache = new RewardPointsCache(rewardPointsCoalescer);
+        this.rewardsExecutor = executors.get(TourGuideExecutors.Workload.REWARDS);
+        this.metrics = new TourGuideMetrics();
+        bindRewardPointsCache();
+    }
+
+    /**
+     * Constructor
+     * The cache is cleared when the catalog publishes a new version, since the attraction ids change.
+     * The collaborators are shared: shutdown does not close them.
+     *
+     * @param attractionCatalog the attractions, shared with the TourGuideService
+     * @param rewardCentral     the rewards central
+     * @param rewardPointsCache the cache in front of the reward points lookups
+     * @param rewardsExecutor   the pool running the reward passes of calculateUsersRewards
+     * @param metrics           the timers of calculateRewards and getRewardPoints
+     */
+    public RewardsService(AttractionCatalog attractionCatalog, RewardCentral rewardCentral,
+                          RewardPointsCache rewardPointsCache, ExecutorService rewardsExecutor,
+                          TourGuideMetrics metrics) {
+        this.ownedResources = List.of();
+        this.attractionCatalog = attractionCatalog;
         this.rewardsCentral = rewardCentral;
+        this.rewardPointsCache = rewardPointsCache;
+        this.rewardsExecutor = rewardsExecutor;
+        this.metrics = metrics;
+        bindRewardPointsCache();
+    }
+
+    /**
+     * Clear the cache on each new catalog version, and publish its counters
+     */
+    private void bindRewardPointsCache() {
+        attractionCatalog.addListener(snapshot -> rewardPointsCache.invalidateAll());
+        FunctionCounter.builder("tourguide.cache.requests", rewardPointsCache, RewardPointsCache::getHitCount)
+                .tags("cache", "rewardPoints", "result", "hit")
+                .register(metrics.getRegistry());
+        FunctionCounter.builder("tourguide.cache.requests", rewardPointsCache, RewardPointsCache::getMissCount)
+                .tags("cache", "rewardPoints", "result", "miss")
+                .register(metrics.getRegistry());
+        FunctionCounter.builder("tourguide.cache.evictions", rewardPointsCache, RewardPointsCache::getEvictionCount)
+                .tags("cache", "rewardPoints")
+                .register(metrics.getRegistry());
+    }
+
+    /**
+     * Close the coalescer and pools created by the convenience constructor, the shared ones being left open
+     */
+    public void shutdown() {
+        for (AutoCloseable resource : ownedResources) {
+            try {
+                resource.close();
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to close " + resource, e);
+            }
+        }
     }
 
     public void setProximityBuffer(int proximityBuffer) {
@@ -59,46 +131,92 @@ public class RewardsService {
 
     /**
      * Calculate the rewards for a user
+     * Only the visited locations added since the previous call are evaluated. When a reward points lookup fails,
+     * the locations stay unpolled: the next call evaluates them again, the rewards already added being kept.
      *
      * @param user the User
      */
     public void calculateRewards(User user) {
-        List<VisitedLocation> userLocations = new CopyOnWriteArrayList<>(user.getVisitedLocations());
-        List<Attraction> attractions = getCachedAttractions();
+        metrics.record(TourGuideMetrics.Operation.CALCULATE_REWARDS, () -> calculateNewRewards(user));
+    }
 
-        List<CompletableFuture<Void>> futures = new ArrayList<>();
+    private void calculateNewRewards(User user) {
+        user.getRewardsLock().lock();
+        try {
+            VisitedLocationHistory.Poll poll = user.peekNewLocations();
+            LocationColumns userLocations = poll.locations();
+            if (userLocations.size() == 0) {
+                return;
+            }
+            AttractionIndex index = getAttractionIndex();
+
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            BitSet scheduledAttractions = new BitSet();
 
-        for (VisitedLocation visitedLocation : userLocations) {
-            for (Attraction attraction : attractions) {
-                if (user.getUserRewards().stream().noneMatch(r -> r.attraction.attractionName.equals(attraction.attractionName))) {
-                    if (nearAttraction(visitedLocation, attraction)) {
+            for (int i = 0; i < userLocations.size(); i++) {
+                double latitude = userLocations.latitude(i);
+                double longitude = userLocations.longitude(i);
+                for (Attraction attraction : index.getWithin(latitude, longitude, proximityBuffer)) {
+                    int ordinal = AttractionOrdinals.of(attraction);
+                    if (!scheduledAttractions.get(ordinal) && !user.hasRewardForAttraction(attraction)) {
 
-                        futures.add(CompletableFuture.runAsync(() -> {
-                            user.addUserReward(
-                                    new UserReward(visitedLocation, attraction, getRewardPoints(attraction, user))
-                            );
-                        }, executorService));
+                        scheduledAttractions.set(ordinal);
+                        VisitedLocation visitedLocation = userLocations.toVisitedLocation(user.getUserId(), i);
+                        futures.add(getRewardPointsAsync(attraction, user.getUserId()).thenAccept(points ->
+                                addUserReward(user, new UserReward(visitedLocation, attraction, points))
+                        ));
                     }
                 }
             }
+            // throws if a lookup failed, before the mark is moved
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+            user.commitPolledLocations(poll);
+        } finally {
+            user.getRewardsLock().unlock();
         }
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
     }
 
     /**
-     * Get the cached attractions
+     * Register a listener called with each reward added by calculateRewards or restoreUserRewards
      *
-     * @return the list of attractions
+     * @param listener the listener, called on the thread completing the reward points lookup
      */
-    private List<Attraction> getCachedAttractions() {
-        if (cachedAttractions == null) {
-            synchronized (this) {
-                if (cachedAttractions == null) {
-                    cachedAttractions = gpsUtil.getAttractions();
-                }
-            }
+    public void addRewardListener(BiConsumer<User, UserReward> listener) {
+        rewardListeners.add(listener);
+    }
+
+    /**
+     * Add rewards restored from a store to a user, notifying the reward listeners as calculateRewards does
+     *
+     * @param user        the user
+     * @param userRewards the rewards, each one added unless the user is already rewarded for its attraction
+     */
+    public void restoreUserRewards(User user, List<UserReward> userRewards) {
+        userRewards.forEach(userReward -> addUserReward(user, userReward));
+    }
+
+    private void addUserReward(User user, UserReward userReward) {
+        if (user.addUserReward(userReward)) {
+            rewardListeners.forEach(listener -> listener.accept(user, userReward));
         }
-        return cachedAttractions;
+    }
+
+    /**
+     * Get the spatial index of the current attraction catalog
+     *
+     * @return the attraction index
+     */
+    public AttractionIndex getAttractionIndex() {
+        return attractionCatalog.getIndex();
+    }
+
+    /**
+     * Get the attraction catalog
+     *
+     * @return the catalog shared with the TourGuideService
+     */
+    public AttractionCatalog getAttractionCatalog() {
+        return attractionCatalog;
     }
 
     /**
@@ -107,7 +225,9 @@ public class RewardsService {
      * @param users List of users
      */
     public void calculateUsersRewards(List<User> users) {
-        users.parallelStream().forEach(this::calculateRewards);
+        CompletableFuture.allOf(users.stream()
+                .map(user -> CompletableFuture.runAsync(() -> calculateRewards(user), rewardsExecutor))
+                .toArray(CompletableFuture[]::new)).join();
     }
 
     /**
@@ -118,29 +238,41 @@ public class RewardsService {
      * @return true if the location is within the proximity of the attraction, false otherwise
      */
     public boolean isWithinAttractionProximity(Attraction attraction, Location location) {
-        return getDistance(attraction, location) <= attractionProximityRange;
+        return AttractionIndex.isInBoundingBox(location, attractionProximityRange, attraction)
+                && getDistance(attraction, location) <= attractionProximityRange;
     }
 
     /**
-     * Check if a visited location is near an attraction
+     * Get rewards points for an attraction
      *
-     * @param visitedLocation the visited location
-     * @param attraction      the attraction
-     * @return true if the visited location is near the attraction, false otherwise
+     * @param attraction the attraction
+     * @param user       the user
+     * @return the rewards point
      */
-    private boolean nearAttraction(VisitedLocation visitedLocation, Attraction attraction) {
-        return getDistance(attraction, visitedLocation.location) <= proximityBuffer;
+    public int getRewardPoints(Attraction attraction, User user) {
+        return getRewardPointsAsync(attraction, user.getUserId()).join();
     }
 
     /**
-     * Get rewards points for an attraction
+     * Get rewards points for an attraction without blocking
+     * Points are served by the RewardPointsCache; identical misses are coalesced by the RewardPointsCoalescer.
      *
      * @param attraction the attraction
-     * @param user       the user
-     * @return the rewards point
+     * @param userId     the user id
+     * @return a future completed with the rewards point
      */
-    public int getRewardPoints(Attraction attraction, User user) {
-        return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+    public CompletableFuture<Integer> getRewardPointsAsync(Attraction attraction, UUID userId) {
+        return metrics.recordAsync(TourGuideMetrics.Operation.GET_REWARD_POINTS,
+                () -> rewardPointsCache.getRewardPoints(attraction.attractionId, userId));
+    }
+
+    /**
+     * Get the reward points cache
+     *
+     * @return the cache, with its hit and miss counts
+     */
+    public RewardPointsCache getRewardPointsCache() {
+        return rewardPointsCache;
     }
 
     /**
@@ -160,10 +292,23 @@ public class RewardsService {
      * @return the distance in miles
      */
     public double getDistance(Location loc1, Location loc2) {
-        double lat1 = Math.toRadians(loc1.latitude);
-        double lon1 = Math.toRadians(loc1.longitude);
-        double lat2 = Math.toRadians(loc2.latitude);
-        double lon2 = Math.toRadians(loc2.longitude);
+        return getDistance(loc1.latitude, loc1.longitude, loc2.latitude, loc2.longitude);
+    }
+
+    /**
+     * Calculate the distance between two points
+     *
+     * @param latitude1  latitude of point one
+     * @param longitude1 longitude of point one
+     * @param latitude2  latitude of point two
+     * @param longitude2 longitude of point two
+     * @return the distance in miles
+     */
+    public double getDistance(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double lat1 = Math.toRadians(latitude1);
+        double lon1 = Math.toRadians(longitude1);
+        double lat2 = Math.toRadians(latitude2);
+        double lon2 = Math.toRadians(longitude2);
 
         double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2)
                 + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
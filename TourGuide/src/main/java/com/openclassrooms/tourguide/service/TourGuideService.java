@@ -1,24 +1,40 @@
 package com.openclassrooms.tourguide.service;
 
+import com.openclassrooms.tourguide.attraction.AttractionDistance;
+import com.openclassrooms.tourguide.configuration.AdaptiveConcurrencyLimiter;
+import com.openclassrooms.tourguide.configuration.ClientLimiters;
+import com.openclassrooms.tourguide.configuration.TourGuideExecutors;
+import com.openclassrooms.tourguide.configuration.TourGuideMetrics;
+import com.openclassrooms.tourguide.configuration.TourGuideProperties;
 import com.openclassrooms.tourguide.dto.NearByAttractionsDto;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.helper.InternalUserGenerator;
+import com.openclassrooms.tourguide.store.UserStore;
 import com.openclassrooms.tourguide.tracker.Tracker;
 import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserRegistry;
 import com.openclassrooms.tourguide.user.UserReward;
+import com.openclassrooms.tourguide.user.VisitedLocationHistory;
 
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
 import gpsUtil.location.Location;
 import gpsUtil.location.VisitedLocation;
 
@@ -28,39 +44,153 @@ import tripPricer.TripPricer;
 /**
  * Tour guide service
  */
-@Service
 public class TourGuideService {
     private Logger logger = LoggerFactory.getLogger(TourGuideService.class);
     private final GpsUtil gpsUtil;
     private final RewardsService rewardsService;
     private final TripPricer tripPricer = new TripPricer();
+    private final TripDealsCache tripDealsCache;
+    private final RewardPipeline rewardPipeline;
     public final Tracker tracker;
     boolean testMode = true;
     public static final int NB_CLOSEST_ATTRACTIONS = 5;
-    private final ExecutorService executorService = Executors.newFixedThreadPool(100);
+    private final ExecutorService executorService;
+    // caps the concurrent calls to gpsUtil, whatever the threads running them
+    private final AdaptiveConcurrencyLimiter gpsUtilLimiter;
+    private final int maxTrackingInFlight;
+    private final VisitedLocationHistory.Retention historyRetention;
+    private final TourGuideMetrics metrics;
+    // saves the users, their locations and rewards, null when the store is disabled
+    private final UserStore userStore;
+    // pools created by the convenience constructor, closed by shutdown, null when shared
+    private final TourGuideExecutors ownedExecutors;
 
     /**
      * Constructor
+     * The pools it creates are closed by shutdown.
      *
      * @param gpsUtil        gpsUtil
      * @param rewardsService rewardsService
      */
     public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService) {
+        this(gpsUtil, rewardsService, new TourGuideExecutors(), new TourGuideProperties(), new TourGuideMetrics(),
+                new ClientLimiters(), true);
+    }
+
+    /**
+     * Constructor
+     * The pools are shared: shutdown does not close them.
+     *
+     * @param gpsUtil        gpsUtil
+     * @param rewardsService rewardsService
+     * @param executors      pools running the location tracking tasks, the trip pricing and the tracker
+     * @param properties     application settings
+     * @param metrics        the timers of the hot paths, also receiving the tracker, pipeline and trip deals meters
+     * @param limiters       the concurrency limiters of the calls to gpsUtil and TripPricer
+     */
+    public TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TourGuideExecutors executors,
+                            TourGuideProperties properties, TourGuideMetrics metrics, ClientLimiters limiters) {
+        this(gpsUtil, rewardsService, executors, properties, metrics, limiters, false);
+    }
+
+    private TourGuideService(GpsUtil gpsUtil, RewardsService rewardsService, TourGuideExecutors executors,
+                             TourGuideProperties properties, TourGuideMetrics metrics, ClientLimiters limiters,
+                             boolean ownsExecutors) {
         this.gpsUtil = gpsUtil;
+        this.ownedExecutors = ownsExecutors ? executors : null;
+        this.metrics = metrics;
         this.rewardsService = rewardsService;
+        this.executorService = executors.get(TourGuideExecutors.Workload.TRACKING);
+        this.gpsUtilLimiter = limiters.get(ClientLimiters.Client.GPS_UTIL);
+        this.maxTrackingInFlight = properties.getTracking().getMaxInFlight();
+        this.historyRetention = properties.getHistory().toRetention();
+        this.rewardPipeline = new RewardPipeline(rewardsService,
+                executors.get(TourGuideExecutors.Workload.REWARD_PIPELINE), properties.getPipeline().getQueueCapacity(),
+                properties.getPipeline().getRewardWorkers());
+        this.tripDealsCache = new TripDealsCache(tripPricer, tripPricerApiKey,
+                executors.get(TourGuideExecutors.Workload.TRIP_PRICING), properties.getTripDeals().getRefreshAfter(),
+                limiters.get(ClientLimiters.Client.TRIP_PRICER));
 
         Locale.setDefault(Locale.US);
 
+        TourGuideProperties.Store store = properties.getStore();
+        this.userStore = store.isEnabled() ? new UserStore(Path.of(store.getDirectory()), historyRetention) : null;
+        if (userStore != null) {
+            restoreUsers();
+        }
         if (testMode) {
             logger.info("TestMode enabled");
-            logger.debug("Initializing users");
-            initializeInternalUsers();
-            logger.debug("Finished initializing users");
+            if (userRegistry.size() == 0) {
+                initializeInternalUsers(properties.getInternalUsers(),
+                        executors.get(TourGuideExecutors.Workload.INTERNAL_USERS));
+            } else {
+                logger.info("Internal test users restored from the user store");
+            }
         }
-        tracker = new Tracker(this);
+        tracker = new Tracker(this, executors.get(TourGuideExecutors.Workload.TRACKER),
+                properties.getTracking().getPollingInterval(), properties.getTracking().getShards());
+        tracker.getMetrics().bindTo(metrics.getRegistry());
+        if (userStore != null) {
+            rewardsService.addRewardListener(userStore::appendReward);
+            userStore.scheduleSnapshots(this::getRegisteredUsers, store.getSnapshotInterval());
+        }
+        bindMeters(metrics.getRegistry());
         addShutDownHook();
     }
 
+    /**
+     * Stop the tracker and save the users, called when the application context closes
+     * The pools are closed too when this service created them.
+     */
+    public void shutdown() {
+        tracker.stopTracking();
+        rewardPipeline.close();
+        try {
+            if (userStore != null) {
+                try {
+                    userStore.snapshot(this::getRegisteredUsers);
+                } finally {
+                    userStore.close();
+                }
+            }
+        } finally {
+            if (ownedExecutors != null) {
+                ownedExecutors.close();
+            }
+        }
+    }
+
+    /**
+     * Restore the users of the store, with their visited locations and rewards, instead of tracking them again
+     * The restored rewards go through the RewardsService, so that its reward listeners count them.
+     */
+    private void restoreUsers() {
+        Map<String, Attraction> attractions = rewardsService.getAttractionCatalog().getAttractions().stream()
+                .collect(Collectors.toMap(attraction -> attraction.attractionName, Function.identity(),
+                        (first, second) -> first));
+        for (UserStore.RestoredUser restored : userStore.load(attractions)) {
+            if (userRegistry.add(restored.user())) {
+                rewardsService.restoreUserRewards(restored.user(), restored.rewards());
+            }
+        }
+    }
+
+    private void bindMeters(MeterRegistry registry) {
+        Gauge.builder("tourguide.pipeline.queue.size", rewardPipeline, RewardPipeline::getQueueSize)
+                .description("Users waiting for their rewards")
+                .register(registry);
+        Gauge.builder("tourguide.pipeline.saturation", rewardPipeline,
+                        pipeline -> (double) pipeline.getQueueSize() / pipeline.getQueueCapacity())
+                .description("Share of the reward queue in use, the tracking blocks at 1")
+                .register(registry);
+        FunctionCounter.builder("tourguide.cache.requests", tripDealsCache, TripDealsCache::getHitCount)
+                .tags("cache", "tripDeals", "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("tourguide.cache.requests", tripDealsCache, TripDealsCache::getMissCount)
+                .tags("cache", "tripDeals", "result", "miss")
+                .register(registry);
+    }
+
     /**
      * Get the user rewards
      *
@@ -78,9 +208,8 @@ public class TourGuideService {
      * @return visitedLocation
      */
     public VisitedLocation getUserLocation(User user) {
-        VisitedLocation visitedLocation = (user.getVisitedLocations().size() > 0) ? user.getLastVisitedLocation()
-                : trackUserLocation(user);
-        return visitedLocation;
+        VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+        return (lastVisitedLocation != null) ? lastVisitedLocation : trackUserLocation(user);
     }
 
     /**
@@ -90,36 +219,94 @@ public class TourGuideService {
      * @return the User
      */
     public User getUser(String userName) {
-        return internalUserMap.get(userName);
+        awaitInternalUsers();
+        return userRegistry.getByName(userName);
+    }
+
+    /**
+     * Get the user by userId
+     *
+     * @param userId the userId of the user, as found in GPS results
+     * @return the User
+     */
+    public User getUserById(UUID userId) {
+        awaitInternalUsers();
+        return userRegistry.getById(userId);
     }
 
     /**
      * Get all users
      *
-     * @return a list of all users
+     * @return an immutable snapshot of all users
      */
     public List<User> getAllUsers() {
-        return internalUserMap.values().stream().collect(Collectors.toList());
+        awaitInternalUsers();
+        return userRegistry.snapshot();
     }
 
     /**
-     * Add a user to the internal user map
+     * Get the users registered so far, without generating the internal users still pending in lazy mode
+     * The tracker and the user store read the users through this method, so that they never trigger the generation.
+     *
+     * @return an immutable snapshot of the registered users
+     */
+    public List<User> getRegisteredUsers() {
+        return userRegistry.snapshot();
+    }
+
+    /**
+     * Add a user to the user registry, unless its userName or userId is already taken
      *
      * @param user the user to add
      */
     public void addUser(User user) {
-        if (!internalUserMap.containsKey(user.getUserName())) {
-            internalUserMap.put(user.getUserName(), user);
+        awaitInternalUsers();
+        if (userRegistry.add(user) && userStore != null) {
+            userStore.appendUser(user);
         }
     }
 
+    /**
+     * Get the trip deals of a user
+     * Deals are served from the TripDealsCache, and only priced when the preferences or the reward points change.
+     *
+     * @param user the user
+     * @return the trip deals
+     */
     public List<Provider> getTripDeals(User user) {
-        int cumulatativeRewardPoints = user.getUserRewards().stream().mapToInt(i -> i.getRewardPoints()).sum();
-        List<Provider> providers = tripPricer.getPrice(tripPricerApiKey, user.getUserId(),
-                user.getUserPreferences().getNumberOfAdults(), user.getUserPreferences().getNumberOfChildren(),
-                user.getUserPreferences().getTripDuration(), cumulatativeRewardPoints);
-        user.setTripDeals(providers);
-        return providers;
+        return getTripDealsAsync(user).join();
+    }
+
+    /**
+     * Get the trip deals of a user without blocking
+     *
+     * @param user the user
+     * @return a future completed with the trip deals
+     */
+    public CompletableFuture<List<Provider>> getTripDealsAsync(User user) {
+        return metrics.recordAsync(TourGuideMetrics.Operation.GET_TRIP_DEALS,
+                () -> tripDealsCache.getTripDeals(user, user.getRewardPointsTotal())).thenApply(providers -> {
+            user.setTripDeals(providers);
+            return providers;
+        });
+    }
+
+    /**
+     * Get the reward pipeline fed by trackUsersLocation
+     *
+     * @return the reward pipeline
+     */
+    public RewardPipeline getRewardPipeline() {
+        return rewardPipeline;
+    }
+
+    /**
+     * Get the trip deals cache
+     *
+     * @return the cache, with its hit and miss counts
+     */
+    public TripDealsCache getTripDealsCache() {
+        return tripDealsCache;
     }
 
 
@@ -130,43 +317,104 @@ public class TourGuideService {
      * @return a VisitedLocation
      */
     public VisitedLocation trackUserLocation(User user) {
-        VisitedLocation visitedLocation = gpsUtil.getUserLocation(user.getUserId());
-        user.addToVisitedLocations(visitedLocation);
-        rewardsService.calculateRewards(user);
+        return metrics.record(TourGuideMetrics.Operation.TRACK_USER_LOCATION, () -> {
+            VisitedLocation visitedLocation = fetchUserLocation(user);
+            rewardsService.calculateRewards(user);
+            return visitedLocation;
+        });
+    }
+
+    /**
+     * Get a user's location from the GPS and add it to the user's visited locations, without calculating the rewards
+     *
+     * @param user the user
+     * @return a VisitedLocation
+     */
+    private VisitedLocation fetchUserLocation(User user) {
+        VisitedLocation visitedLocation = gpsUtilLimiter.call(() -> gpsUtil.getUserLocation(user.getUserId()));
+        if (userStore != null) {
+            // logged before the next location of the user is added, so that its locations are logged in sequence
+            user.addToVisitedLocations(visitedLocation,
+                    sequence -> userStore.appendLocation(user, sequence, visitedLocation));
+        } else {
+            user.addToVisitedLocations(visitedLocation);
+        }
+        return visitedLocation;
+    }
+
+    /**
+     * Get a user's location, then hand the user over to the reward pipeline
+     * Blocks while the reward queue is full, so that tracking never outruns the reward calculation.
+     *
+     * @param user the user
+     * @return a VisitedLocation
+     */
+    private VisitedLocation trackUserLocationThroughPipeline(User user) {
+        // the rewards are timed by calculateRewards once a pipeline worker runs them
+        VisitedLocation visitedLocation = metrics.record(TourGuideMetrics.Operation.TRACK_USER_LOCATION,
+                () -> fetchUserLocation(user));
+        try {
+            rewardPipeline.submit(user);
+        } catch (InterruptedException e) {
+            // the location stays unpolled: the next reward pass of the user will evaluate it
+            Thread.currentThread().interrupt();
+        }
         return visitedLocation;
     }
 
 
     /**
      * Track a list of users' locations using threads
+     * Returns once every location is known, before the rewards of the users are calculated: they are calculated
+     * asynchronously by the reward pipeline. Call getRewardPipeline().awaitIdle to wait for them.
      *
      * @param users the list of users to track
      * @return a map of userName to VisitedLocation
      */
     public Map<String, VisitedLocation> trackUsersLocation(List<User> users) {
+        Map<String, VisitedLocation> visitedLocations = new ConcurrentHashMap<>();
+        trackUsersLocation(users, (user, visitedLocation) -> visitedLocations.put(user.getUserName(), visitedLocation));
+        return visitedLocations;
+    }
 
-        Map<String, CompletableFuture<VisitedLocation>> futures = new HashMap<>();
-
-        users.forEach((user) -> {
-            futures.put(
-                    user.getUserName(),
-                    CompletableFuture.supplyAsync(
-                            () -> trackUserLocation(user)
-                            , executorService)
-            );
-        });
-
-        CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).join();
-
-        return futures
-                .entrySet()
-                .stream()
-                .collect(
-                        Collectors.toMap(
-                                Map.Entry::getKey,
-                                e -> e.getValue().join()
-                        )
-                );
+    /**
+     * Track users' locations through a bounded pipeline, reporting each location as soon as it is known
+     * At most maxTrackingInFlight users are tracked at once: the iteration blocks until a slot is free,
+     * so a slow GPS call only holds its own slot. Failed users are logged and not reported.
+     * Each user is then queued to the reward pipeline: the sink is called once the location is known,
+     * the rewards follow asynchronously.
+     *
+     * @param users the users to track
+     * @param sink  receives each user with its new location, called concurrently from the tracking threads
+     */
+    public void trackUsersLocation(Iterable<User> users, BiConsumer<User, VisitedLocation> sink) {
+        Semaphore slots = new Semaphore(maxTrackingInFlight);
+        try {
+            for (User user : users) {
+                slots.acquire();
+                try {
+                    CompletableFuture.supplyAsync(() -> trackUserLocationThroughPipeline(user), executorService)
+                            .whenComplete((visitedLocation, throwable) -> {
+                                try {
+                                    if (throwable == null) {
+                                        sink.accept(user, visitedLocation);
+                                    } else {
+                                        logger.error("Failed to track user " + user.getUserName(), throwable);
+                                    }
+                                } finally {
+                                    slots.release();
+                                }
+                            });
+                } catch (RejectedExecutionException e) {
+                    slots.release();
+                    throw e;
+                }
+            }
+            // wait for the last users
+            slots.acquire(maxTrackingInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
@@ -176,31 +424,31 @@ public class TourGuideService {
      * @return a list of NB_CLOSEST_ATTRACTIONS nearest attractions
      */
     public List<NearByAttractionsDto> getNearByAttractions(VisitedLocation visitedLocation) {
+        return metrics.record(TourGuideMetrics.Operation.GET_NEAR_BY_ATTRACTIONS,
+                () -> findNearByAttractions(visitedLocation));
+    }
 
-        return gpsUtil.getAttractions()
-                .parallelStream() // Utilisation d'un flux parallèle
-                .map(attraction -> {
-
-                    double distanceInMiles = rewardsService.getDistance(attraction, visitedLocation.location);
-
-                    Location attractionLocation = new Location(attraction.latitude, attraction.longitude);
+    private List<NearByAttractionsDto> findNearByAttractions(VisitedLocation visitedLocation) {
+        List<AttractionDistance> nearest = rewardsService.getAttractionCatalog().getIndex()
+                .getNearest(visitedLocation.location.latitude, visitedLocation.location.longitude,
+                        NB_CLOSEST_ATTRACTIONS);
 
-                    int rewardPoints = rewardsService.getRewardsCentral()
-                            .getAttractionRewardPoints(attraction.attractionId, visitedLocation.userId);
+        // Request the reward points of the nearest attractions only, all at once so that they share a coalescing window
+        List<CompletableFuture<Integer>> rewardPoints = nearest.stream()
+                .map(near -> rewardsService.getRewardPointsAsync(near.attraction(), visitedLocation.userId))
+                .toList();
 
-                    // Create a map entry with distance and NearByAttractionsDto
-                    return new AbstractMap.SimpleEntry<>(distanceInMiles, new NearByAttractionsDto(
+        return IntStream.range(0, nearest.size())
+                .mapToObj(i -> {
+                    Attraction attraction = nearest.get(i).attraction();
+                    return new NearByAttractionsDto(
                             attraction.attractionName,
-                            attractionLocation,
+                            new Location(attraction.latitude, attraction.longitude),
                             visitedLocation.location,
-                            distanceInMiles,
-                            rewardPoints
-                    ));
-
+                            nearest.get(i).distanceInMiles(),
+                            rewardPoints.get(i).join()
+                    );
                 })
-                .sorted(Map.Entry.comparingByKey())
-                .limit(NB_CLOSEST_ATTRACTIONS)
-                .map(Map.Entry::getValue)
                 .toList();
     }
 
@@ -217,69 +465,63 @@ public class TourGuideService {
      **********************************************************************************/
     private static final String tripPricerApiKey = "test-server-api-key";
     // Database connection will be used for external users, but for testing purposes
-    // internal users are provided and stored in memory
-    private final Map<String, User> internalUserMap = new HashMap<>();
+    // internal users are provided and stored in memory, and saved to the user store when it is enabled
+    private final UserRegistry userRegistry = new UserRegistry();
+    // generation of the internal users, run on the first access to the users in lazy mode
+    private volatile FutureTask<Void> pendingInternalUsers;
 
     /**
      * Initialize internal users
-     * This method creates a number of internal users and adds them to the internalUserMap
-     */
-    private void initializeInternalUsers() {
-        IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
-            String userName = "internalUser" + i;
-            String phone = "000";
-            String email = userName + "@tourGuide.com";
-            User user = new User(UUID.randomUUID(), userName, phone, email);
-            generateUserLocationHistory(user);
-
-            internalUserMap.put(userName, user);
-        });
-        logger.debug("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users.");
-    }
-
-
-    /**
-     * Generate a random user location history
-     *
-     * @param user the user
-     */
-    private void generateUserLocationHistory(User user) {
-        IntStream.range(0, 3).forEach(i -> {
-            user.addToVisitedLocations(new VisitedLocation(user.getUserId(),
-                    new Location(generateRandomLatitude(), generateRandomLongitude()), getRandomTime()));
-        });
-    }
-
-    /**
-     * Generate a random longitude
-     *
-     * @return a random longitude
-     */
-    private double generateRandomLongitude() {
-        double leftLimit = -180;
-        double rightLimit = 180;
-        return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
-    }
-
-    /**
-     * Generate a random latitude
+     * InternalTestHelper.getInternalUserNumber() users are generated in parallel and added to the userRegistry,
+     * at once, on the first access to the users, or in the background, depending on the generation mode.
      *
-     * @return a random latitude
+     * @param settings the generation mode and seed
+     * @param executor the executor generating the users
      */
-    private double generateRandomLatitude() {
-        double leftLimit = -85.05112878;
-        double rightLimit = 85.05112878;
-        return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+    private void initializeInternalUsers(TourGuideProperties.InternalUsers settings, ExecutorService executor) {
+        long seed = settings.getSeed() != null ? settings.getSeed() : ThreadLocalRandom.current().nextLong();
+        InternalUserGenerator generator = new InternalUserGenerator(seed, historyRetention);
+        int count = InternalTestHelper.getInternalUserNumber();
+        // generated users are logged before they are registered, so that a restart before the next snapshot
+        // restores them with the changes made to them
+        Consumer<List<User>> sink = userStore == null ? userRegistry::addAll
+                : users -> userStore.appendUsers(users, () -> userRegistry.addAll(users));
+        Supplier<CompletableFuture<Void>> generation = () -> {
+            long start = System.nanoTime();
+            return generator.generate(count, sink, executor).thenRun(() ->
+                    logger.debug("Created " + count + " internal test users from seed " + seed + " in "
+                            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms."));
+        };
+        switch (settings.getGeneration()) {
+            case EAGER -> generation.get().join();
+            case LAZY -> pendingInternalUsers = new FutureTask<>(() -> generation.get().join(), null);
+            case BACKGROUND -> generation.get().whenComplete((ignored, throwable) -> {
+                if (throwable != null) {
+                    logger.error("Failed to create the internal test users", throwable);
+                }
+            });
+        }
     }
 
     /**
-     * Generate a random time
-     *
-     * @return a random time
+     * Generate the internal users on the first access to the users in lazy mode, or wait for their generation
      */
-    private Date getRandomTime() {
-        LocalDateTime localDateTime = LocalDateTime.now().minusDays(new Random().nextInt(30));
-        return Date.from(localDateTime.toInstant(ZoneOffset.UTC));
+    private void awaitInternalUsers() {
+        FutureTask<Void> pending = pendingInternalUsers;
+        if (pending == null) {
+            return;
+        }
+        // runs the generation on the first caller only, the others wait for it
+        pending.run();
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to create the internal test users", e.getCause());
+        }
+        pendingInternalUsers = null;
     }
 
 }
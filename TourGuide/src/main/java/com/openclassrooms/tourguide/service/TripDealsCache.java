@@ -0,0 +1,228 @@
+package com.openclassrooms.tourguide.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+import com.openclassrooms.tourguide.configuration.AdaptiveConcurrencyLimiter;
+import com.openclassrooms.tourguide.configuration.ClientLimiters;
+import com.openclassrooms.tourguide.configuration.TourGuideProperties;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+
+/**
+ * Cache of the trip deals of each user, priced asynchronously.
+ * Deals are keyed on the preferences and the reward points total they were priced with:
+ * when either changes, the cached deals are discarded and priced again.
+ * Deals older than refreshAfter are still served while new ones are priced in the background.
+ */
+public class TripDealsCache {
+    public static final Duration DEFAULT_REFRESH_AFTER = Duration.ofMinutes(10);
+
+    private static final Logger log = LoggerFactory.getLogger(TripDealsCache.class);
+
+    /**
+     * Inputs of a trip pricing
+     */
+    public record Key(int numberOfAdults, int numberOfChildren, int tripDuration, int rewardPoints) {
+
+        public static Key of(User user, int rewardPoints) {
+            UserPreferences preferences = user.getUserPreferences();
+            return new Key(preferences.getNumberOfAdults(), preferences.getNumberOfChildren(),
+                    preferences.getTripDuration(), rewardPoints);
+        }
+    }
+
+    private final TripPricer tripPricer;
+    private final String apiKey;
+    private final Executor pricingExecutor;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final long refreshAfterNanos;
+    private final LongSupplier nanoClock;
+    private final ConcurrentMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor with a limiter of the default trip pricer settings
+     *
+     * @param tripPricer      the trip pricer
+     * @param apiKey          the trip pricer api key
+     * @param pricingExecutor the executor running the calls to the trip pricer
+     * @param refreshAfter    the age after which cached deals are priced again in the background
+     */
+    public TripDealsCache(TripPricer tripPricer, String apiKey, Executor pricingExecutor, Duration refreshAfter) {
+        this(tripPricer, apiKey, pricingExecutor, refreshAfter, System::nanoTime);
+    }
+
+    /**
+     * Constructor with a limiter of the default trip pricer settings
+     *
+     * @param tripPricer      the trip pricer
+     * @param apiKey          the trip pricer api key
+     * @param pricingExecutor the executor running the calls to the trip pricer
+     * @param refreshAfter    the age after which cached deals are priced again in the background
+     * @param nanoClock       the clock measuring the age of the deals, in nanoseconds
+     */
+    public TripDealsCache(TripPricer tripPricer, String apiKey, Executor pricingExecutor, Duration refreshAfter,
+                          LongSupplier nanoClock) {
+        this(tripPricer, apiKey, pricingExecutor, refreshAfter, defaultLimiter(), nanoClock);
+    }
+
+    private static AdaptiveConcurrencyLimiter defaultLimiter() {
+        // owned by this cache: the application passes the limiter shared through ClientLimiters instead
+        return new AdaptiveConcurrencyLimiter(ClientLimiters.Client.TRIP_PRICER.getClientName(),
+                new TourGuideProperties.Limits().getTripPricer());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param tripPricer      the trip pricer
+     * @param apiKey          the trip pricer api key
+     * @param pricingExecutor the executor running the calls to the trip pricer
+     * @param refreshAfter    the age after which cached deals are priced again in the background
+     * @param limiter         the concurrency limiter of the calls to the trip pricer
+     */
+    public TripDealsCache(TripPricer tripPricer, String apiKey, Executor pricingExecutor, Duration refreshAfter,
+                          AdaptiveConcurrencyLimiter limiter) {
+        this(tripPricer, apiKey, pricingExecutor, refreshAfter, limiter, System::nanoTime);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param tripPricer      the trip pricer
+     * @param apiKey          the trip pricer api key
+     * @param pricingExecutor the executor running the calls to the trip pricer
+     * @param refreshAfter    the age after which cached deals are priced again in the background
+     * @param limiter         the concurrency limiter of the calls to the trip pricer
+     * @param nanoClock       the clock measuring the age of the deals, in nanoseconds
+     */
+    public TripDealsCache(TripPricer tripPricer, String apiKey, Executor pricingExecutor, Duration refreshAfter,
+                          AdaptiveConcurrencyLimiter limiter, LongSupplier nanoClock) {
+        this.tripPricer = tripPricer;
+        this.limiter = limiter;
+        this.apiKey = apiKey;
+        this.pricingExecutor = pricingExecutor;
+        this.refreshAfterNanos = refreshAfter.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Get the trip deals of a user
+     * Concurrent requests with the same key share one pricing.
+     *
+     * @param user         the user
+     * @param rewardPoints the reward points total of the user
+     * @return a future completed with the deals
+     */
+    public CompletableFuture<List<Provider>> getTripDeals(User user, int rewardPoints) {
+        Key key = Key.of(user, rewardPoints);
+        long now = nanoClock.getAsLong();
+        Entry entry = entries.get(user.getUserId());
+        if (entry != null && entry.isValidFor(key)) {
+            hits.increment();
+            if (entry.deals.isDone() && now - entry.pricedAt >= refreshAfterNanos) {
+                refresh(user, entry);
+            }
+            return entry.deals.copy();
+        }
+
+        Entry created = new Entry(key, now);
+        Entry current = entries.compute(user.getUserId(),
+                (userId, existing) -> existing != null && existing.isValidFor(key) ? existing : created);
+        if (current == created) {
+            misses.increment();
+            price(user, key).whenComplete((deals, error) -> {
+                if (error != null) {
+                    entries.remove(user.getUserId(), created);
+                    created.deals.completeExceptionally(error);
+                } else {
+                    created.deals.complete(deals);
+                }
+            });
+        } else {
+            hits.increment();
+        }
+        return current.deals.copy();
+    }
+
+    /**
+     * Remove the deals of a user
+     *
+     * @param userId the user id
+     */
+    public void invalidate(UUID userId) {
+        entries.remove(userId);
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Price the deals again, keeping the current ones until the new ones are ready
+     */
+    private void refresh(User user, Entry entry) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        price(user, entry.key).whenComplete((deals, error) -> {
+            if (error != null) {
+                log.warn("Trip deals refresh failed for user {}", user.getUserName(), error);
+                entry.refreshing.set(false);
+                return;
+            }
+            Entry refreshed = new Entry(entry.key, now);
+            refreshed.deals.complete(deals);
+            entries.replace(user.getUserId(), entry, refreshed);
+        });
+    }
+
+    private CompletableFuture<List<Provider>> price(User user, Key key) {
+        try {
+            return CompletableFuture.supplyAsync(() -> List.copyOf(limiter.call(() -> tripPricer.getPrice(apiKey,
+                    user.getUserId(), key.numberOfAdults(), key.numberOfChildren(), key.tripDuration(),
+                    key.rewardPoints()))), pricingExecutor);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Deals priced, or being priced, for a key
+     */
+    private static final class Entry {
+        private final Key key;
+        private final long pricedAt;
+        private final CompletableFuture<List<Provider>> deals = new CompletableFuture<>();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(Key key, long pricedAt) {
+            this.key = key;
+            this.pricedAt = pricedAt;
+        }
+
+        private boolean isValidFor(Key key) {
+            return this.key.equals(key) && !deals.isCompletedExceptionally();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.openclassrooms.tourguide.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Growable heap buffer a record is encoded into before being written to the snapshot or to a log.
+ * The snapshot reuses one buffer for all its records, while each logged change gets its own buffer,
+ * handed over to the log writer.
+ */
+final class RecordBuffer {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private byte[] bytes;
+    private ByteBuffer buffer;
+
+    RecordBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param initialCapacity the expected length of the record, the buffer growing beyond
+     */
+    RecordBuffer(int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    RecordBuffer clear() {
+        buffer.clear();
+        return this;
+    }
+
+    byte[] array() {
+        return bytes;
+    }
+
+    int length() {
+        return buffer.position();
+    }
+
+    RecordBuffer putByte(byte value) {
+        ensureRemaining(Byte.BYTES);
+        buffer.put(value);
+        return this;
+    }
+
+    RecordBuffer putInt(int value) {
+        ensureRemaining(Integer.BYTES);
+        buffer.putInt(value);
+        return this;
+    }
+
+    RecordBuffer putLong(long value) {
+        ensureRemaining(Long.BYTES);
+        buffer.putLong(value);
+        return this;
+    }
+
+    RecordBuffer putDouble(double value) {
+        ensureRemaining(Double.BYTES);
+        buffer.putDouble(value);
+        return this;
+    }
+
+    RecordBuffer putUuid(UUID value) {
+        return putLong(value.getMostSignificantBits()).putLong(value.getLeastSignificantBits());
+    }
+
+    /**
+     * Put a string as its UTF-8 length then bytes, a null string having a length of -1
+     */
+    RecordBuffer putString(String value) {
+        if (value == null) {
+            return putInt(-1);
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        putInt(utf8.length);
+        ensureRemaining(utf8.length);
+        buffer.put(utf8);
+        return this;
+    }
+
+    static UUID getUuid(ByteBuffer in) {
+        return new UUID(in.getLong(), in.getLong());
+    }
+
+    static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[length];
+        in.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private void ensureRemaining(int length) {
+        if (buffer.remaining() < length) {
+            int position = buffer.position();
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + length));
+            buffer = ByteBuffer.wrap(bytes).position(position);
+        }
+    }
+}
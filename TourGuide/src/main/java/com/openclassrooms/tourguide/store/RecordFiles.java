@@ -0,0 +1,146 @@
+package com.openclassrooms.tourguide.store;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Framing of the records of the snapshot and log files.
+ * Each record is written as its length, its bytes and their CRC32C, so that a reader stops cleanly
+ * at a record torn by a crash. Files are read, and the snapshot written, through memory-mapped regions:
+ * a record never straddles two regions, a new region being mapped from its start when it does not fit.
+ */
+final class RecordFiles {
+    private static final Logger logger = LoggerFactory.getLogger(RecordFiles.class);
+    private static final int FRAME_SIZE = 2 * Integer.BYTES;
+    private static final long MAX_READ_REGION_SIZE = 1L << 30;
+    private static final long WRITE_REGION_SIZE = 64L << 20;
+
+    private RecordFiles() {
+    }
+
+    /**
+     * Write a record to a stream
+     *
+     * @param out    the stream
+     * @param record the record
+     */
+    static void write(DataOutput out, RecordBuffer record) throws IOException {
+        out.writeInt(record.length());
+        out.write(record.array(), 0, record.length());
+        out.writeInt(checksum(record));
+    }
+
+    /**
+     * Read the records of a file, stopping at the end of the file or at the first torn or corrupted record
+     *
+     * @param file   the file
+     * @param reader receives each record, positioned at its first byte
+     * @return the number of records read
+     */
+    static int read(Path file, Consumer<ByteBuffer> reader) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            long regionStart = 0;
+            MappedByteBuffer region = null;
+            int count = 0;
+            while (size - position >= FRAME_SIZE) {
+                if (region == null || position + Integer.BYTES > regionStart + region.capacity()) {
+                    regionStart = position;
+                    region = map(channel, position, size);
+                }
+                int length = region.getInt((int) (position - regionStart));
+                long end = position + FRAME_SIZE + length;
+                if (length < 0 || end > size || end - position > MAX_READ_REGION_SIZE) {
+                    break;
+                }
+                if (end > regionStart + region.capacity()) {
+                    regionStart = position;
+                    region = map(channel, position, size);
+                }
+                int offset = (int) (position - regionStart) + Integer.BYTES;
+                ByteBuffer record = region.slice(offset, length);
+                if (checksum(record.duplicate()) != region.getInt(offset + length)) {
+                    break;
+                }
+                reader.accept(record);
+                position = end;
+                count++;
+            }
+            if (position < size) {
+                logger.warn("Ignored the last " + (size - position) + " bytes of " + file
+                        + ": torn or corrupted record");
+            }
+            return count;
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, MAX_READ_REGION_SIZE));
+    }
+
+    private static int checksum(RecordBuffer record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), 0, record.length());
+        return (int) crc.getValue();
+    }
+
+    private static int checksum(ByteBuffer record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writer of a new file through memory-mapped regions, truncated to its records and forced to disk when closed
+     */
+    static final class MappedWriter implements Closeable {
+        private final FileChannel channel;
+        private MappedByteBuffer region;
+        private long regionStart = 0;
+
+        MappedWriter(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        void write(RecordBuffer record) throws IOException {
+            int frameLength = record.length() + FRAME_SIZE;
+            if (region == null || region.remaining() < frameLength) {
+                long start = 0;
+                if (region != null) {
+                    region.force();
+                    start = regionStart + region.position();
+                }
+                regionStart = start;
+                region = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.max(WRITE_REGION_SIZE, frameLength));
+            }
+            region.putInt(record.length()).put(record.array(), 0, record.length()).putInt(checksum(record));
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (region != null) {
+                    region.force();
+                    // drop the unused end of the last region
+                    channel.truncate(regionStart + region.position());
+                }
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.openclassrooms.tourguide.store;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.user.LocationColumns;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserPreferences;
+import com.openclassrooms.tourguide.user.UserReward;
+import com.openclassrooms.tourguide.user.VisitedLocationHistory;
+
+/**
+ * Binary layout of the users and of the changes logged to the store.
+ * Attractions are saved with their name, place and coordinates: gpsUtil attractionIds change on each load,
+ * so a restored reward is bound to the current attraction of the same name, or to a copy of the saved one
+ * when the catalog no longer has it. Trip deals are not saved, they are priced again on demand.
+ */
+final class UserCodec {
+    private static final Logger logger = LoggerFactory.getLogger(UserCodec.class);
+
+    // log record types
+    static final byte USER = 1;
+    static final byte LOCATION = 2;
+    static final byte REWARD = 3;
+
+    private static final int MAGIC = 0x54475553;
+    private static final int VERSION = 1;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private UserCodec() {
+    }
+
+    /**
+     * Encode the first record of a snapshot
+     *
+     * @param generation the first log generation to replay after the snapshot
+     */
+    static RecordBuffer header(RecordBuffer out, long generation) {
+        return out.clear().putInt(MAGIC).putInt(VERSION).putLong(generation);
+    }
+
+    /**
+     * Decode the first record of a snapshot
+     *
+     * @return the first log generation to replay after the snapshot
+     * @throws IllegalStateException if the record is not the header of a snapshot of this version
+     */
+    static long readHeader(ByteBuffer in) {
+        int magic = in.getInt();
+        int version = in.getInt();
+        if (magic != MAGIC || version != VERSION) {
+            throw new IllegalStateException("Not a version " + VERSION + " user snapshot");
+        }
+        return in.getLong();
+    }
+
+    /**
+     * Encode a user with its preferences, visited locations and rewards
+     */
+    static RecordBuffer user(RecordBuffer out, User user) {
+        out.putUuid(user.getUserId())
+                .putString(user.getUserName())
+                .putString(user.getPhoneNumber())
+                .putString(user.getEmailAddress());
+        Date latestLocationTimestamp = user.getLatestLocationTimestamp();
+        out.putLong(latestLocationTimestamp == null ? NO_TIMESTAMP : latestLocationTimestamp.getTime());
+        UserPreferences preferences = user.getUserPreferences();
+        out.putInt(preferences.getAttractionProximity())
+                .putInt(preferences.getTripDuration())
+                .putInt(preferences.getTicketQuantity())
+                .putInt(preferences.getNumberOfAdults())
+                .putInt(preferences.getNumberOfChildren());
+        VisitedLocationHistory.State history = user.getVisitedLocationHistory().getState();
+        out.putLong(history.appended()).putLong(history.evicted()).putLong(history.mark());
+        locations(out, history.archive());
+        locations(out, history.recent());
+        List<UserReward> userRewards = user.getUserRewards();
+        out.putInt(userRewards.size());
+        for (UserReward userReward : userRewards) {
+            reward(out, userReward);
+        }
+        return out;
+    }
+
+    /**
+     * Decode a user, without adding its rewards
+     *
+     * @param retention   how many visited locations the restored user keeps
+     * @param attractions the current attractions by name
+     */
+    static UserStore.RestoredUser readUser(ByteBuffer in, VisitedLocationHistory.Retention retention,
+                                           Map<String, Attraction> attractions) {
+        UUID userId = RecordBuffer.getUuid(in);
+        User user = new User(userId, RecordBuffer.getString(in), RecordBuffer.getString(in),
+                RecordBuffer.getString(in), retention);
+        long latestLocationTimestamp = in.getLong();
+        if (latestLocationTimestamp != NO_TIMESTAMP) {
+            user.setLatestLocationTimestamp(new Date(latestLocationTimestamp));
+        }
+        UserPreferences preferences = new UserPreferences();
+        preferences.setAttractionProximity(in.getInt());
+        preferences.setTripDuration(in.getInt());
+        preferences.setTicketQuantity(in.getInt());
+        preferences.setNumberOfAdults(in.getInt());
+        preferences.setNumberOfChildren(in.getInt());
+        user.setUserPreferences(preferences);
+        long appended = in.getLong();
+        long evicted = in.getLong();
+        long mark = in.getLong();
+        LocationColumns archive = readLocations(in);
+        LocationColumns recent = readLocations(in);
+        user.getVisitedLocationHistory().restore(new VisitedLocationHistory.State(archive, recent, appended, evicted,
+                mark));
+        int rewardCount = in.getInt();
+        List<UserReward> userRewards = new ArrayList<>(rewardCount);
+        for (int i = 0; i < rewardCount; i++) {
+            userRewards.add(readReward(in, userId, attractions));
+        }
+        return new UserStore.RestoredUser(user, userRewards);
+    }
+
+    /**
+     * Encode a location appended to the history of a user
+     */
+    static RecordBuffer location(RecordBuffer out, UUID userId, long sequence, VisitedLocation visitedLocation) {
+        return out.putUuid(userId)
+                .putLong(sequence)
+                .putDouble(visitedLocation.location.latitude)
+                .putDouble(visitedLocation.location.longitude)
+                .putLong(visitedLocation.timeVisited.getTime());
+    }
+
+    /**
+     * Decode a location and append it to the history of its user when it is the next one of the history
+     * A location the history already holds, saved by the snapshot too, is skipped. A location following a missing one
+     * is skipped too, with a warning: its sequence number would no longer match the history.
+     *
+     * @param users the users being restored, by id
+     */
+    static void readLocation(ByteBuffer in, Map<UUID, UserStore.RestoredUser> users) {
+        UserStore.RestoredUser restored = users.get(RecordBuffer.getUuid(in));
+        long sequence = in.getLong();
+        double latitude = in.getDouble();
+        double longitude = in.getDouble();
+        long time = in.getLong();
+        if (restored != null) {
+            VisitedLocationHistory history = restored.user().getVisitedLocationHistory();
+            long appended = history.getAppendedCount();
+            if (sequence == appended) {
+                history.add(latitude, longitude, time);
+            } else if (sequence > appended) {
+                logger.warn("Skipped the logged location " + sequence + " of user " + restored.user().getUserName()
+                        + ": its history ends at location " + appended);
+            }
+        }
+    }
+
+    static RecordBuffer reward(RecordBuffer out, UserReward userReward) {
+        Attraction attraction = userReward.attraction;
+        out.putString(attraction.attractionName)
+                .putString(attraction.city)
+                .putString(attraction.state)
+                .putDouble(attraction.latitude)
+                .putDouble(attraction.longitude);
+        VisitedLocation visitedLocation = userReward.visitedLocation;
+        return out.putDouble(visitedLocation.location.latitude)
+                .putDouble(visitedLocation.location.longitude)
+                .putLong(visitedLocation.timeVisited.getTime())
+                .putInt(userReward.getRewardPoints());
+    }
+
+    static UserReward readReward(ByteBuffer in, UUID userId, Map<String, Attraction> attractions) {
+        String attractionName = RecordBuffer.getString(in);
+        String city = RecordBuffer.getString(in);
+        String state = RecordBuffer.getString(in);
+        double attractionLatitude = in.getDouble();
+        double attractionLongitude = in.getDouble();
+        Attraction attraction = attractions.get(attractionName);
+        if (attraction == null) {
+            attraction = new Attraction(attractionName, city, state, attractionLatitude, attractionLongitude);
+        }
+        VisitedLocation visitedLocation = new VisitedLocation(userId, new Location(in.getDouble(), in.getDouble()),
+                new Date(in.getLong()));
+        return new UserReward(visitedLocation, attraction, in.getInt());
+    }
+
+    private static void locations(RecordBuffer out, LocationColumns locations) {
+        out.putInt(locations.size());
+        for (int i = 0; i < locations.size(); i++) {
+            out.putDouble(locations.latitude(i)).putDouble(locations.longitude(i)).putLong(locations.time(i));
+        }
+    }
+
+    private static LocationColumns readLocations(ByteBuffer in) {
+        int size = in.getInt();
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        long[] times = new long[size];
+        for (int i = 0; i < size; i++) {
+            latitudes[i] = in.getDouble();
+            longitudes[i] = in.getDouble();
+            times[i] = in.getLong();
+        }
+        return new LocationColumns(latitudes, longitudes, times);
+    }
+}
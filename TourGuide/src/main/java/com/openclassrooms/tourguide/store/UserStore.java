@@ -0,0 +1,445 @@
+package com.openclassrooms.tourguide.store;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+import com.openclassrooms.tourguide.user.VisitedLocationHistory;
+
+/**
+ * Persistent store of the users, with their visited locations and rewards.
+ * The store is a snapshot of the whole population, written periodically through memory-mapped regions,
+ * followed by append-only logs of the users, locations and rewards added since.
+ * Logs are numbered by generation: a snapshot first switches to a new log, then writes the users to a temporary file
+ * moved over the previous snapshot, and finally deletes the logs it covers. A restart maps the snapshot and replays
+ * the logs written after it, without calling gpsUtil again. Replaying is idempotent: a location carries its sequence
+ * number in the history and a user is rewarded once per attraction, so a change found both in the snapshot
+ * and in a log is applied once.
+ * Changes are encoded by the threads making them, then handed over through a bounded queue to a single writer thread,
+ * so that the tracking and reward threads never wait for each other on the log.
+ * Logs are buffered and flushed every FLUSH_INTERVAL: a crash loses the changes of the last interval at most.
+ */
+public class UserStore implements AutoCloseable {
+    public static final Duration FLUSH_INTERVAL = Duration.ofSeconds(1);
+
+    static final String SNAPSHOT_FILE = "users.snapshot";
+    private static final String LOG_PREFIX = "users-";
+    private static final String LOG_SUFFIX = ".log";
+    private static final int LOG_BUFFER_SIZE = 64 * 1024;
+    private static final int LOG_QUEUE_CAPACITY = 64 * 1024;
+    private static final Duration WRITER_CLOSE_TIMEOUT = Duration.ofSeconds(30);
+    // expected length of a location record, the most frequent one
+    private static final int LOCATION_RECORD_SIZE = 64;
+    // queued by close after the last change to write
+    private static final RecordBuffer END_OF_LOG = new RecordBuffer(0);
+
+    private final Logger logger = LoggerFactory.getLogger(UserStore.class);
+
+    /**
+     * A user restored from the store, with the rewards to add to it
+     * Rewards are not added by the store, so that RewardsService notifies its reward listeners of them.
+     *
+     * @param user    the user, with its preferences and visited locations
+     * @param rewards the rewards of the user
+     */
+    public record RestoredUser(User user, List<UserReward> rewards) {
+    }
+
+    private final Path directory;
+    private final VisitedLocationHistory.Retention retention;
+    // serializes the snapshots, which are written without holding the log lock
+    private final Object snapshotLock = new Object();
+    // held by a snapshot while it switches logs and collects the users, and while new users are logged and registered
+    private final Object registrationLock = new Object();
+    private final RecordBuffer snapshotBuffer = new RecordBuffer();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService writer;
+    private final BlockingQueue<RecordBuffer> logQueue = new ArrayBlockingQueue<>(LOG_QUEUE_CAPACITY);
+    // set once loaded and cleared on close: changes are queued only in between
+    private volatile boolean logging = false;
+    // log state, guarded by this
+    private DataOutputStream log;
+    private long generation;
+    private boolean closed = false;
+
+    /**
+     * Constructor
+     *
+     * @param directory the directory of the snapshot and logs, created if missing
+     * @param retention how many visited locations the restored users keep
+     */
+    public UserStore(Path directory, VisitedLocationHistory.Retention retention) {
+        this.directory = directory;
+        this.retention = retention;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create the user store directory " + directory, e);
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("user-store"));
+        this.writer = Executors.newSingleThreadExecutor(daemonThreadFactory("user-store-writer"));
+    }
+
+    private static ThreadFactory daemonThreadFactory(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Restore the users from the snapshot and the logs, then start a new log
+     * Must be called once, before any change is logged.
+     *
+     * @param attractions the current attractions by name, the restored rewards are bound to
+     * @return the users, in the order they were saved then added
+     */
+    public synchronized List<RestoredUser> load(Map<String, Attraction> attractions) {
+        if (log != null || closed) {
+            throw new IllegalStateException("The user store is already loaded");
+        }
+        long start = System.nanoTime();
+        Map<UUID, RestoredUser> users = new LinkedHashMap<>();
+        try {
+            long firstGeneration = 0;
+            Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+            if (Files.exists(snapshotFile)) {
+                long[] header = {-1};
+                RecordFiles.read(snapshotFile, record -> {
+                    if (header[0] < 0) {
+                        header[0] = UserCodec.readHeader(record);
+                    } else {
+                        RestoredUser restored = UserCodec.readUser(record, retention, attractions);
+                        users.put(restored.user().getUserId(), restored);
+                    }
+                });
+                firstGeneration = Math.max(0, header[0]);
+            }
+            long nextGeneration = firstGeneration;
+            int replayed = 0;
+            for (long logGeneration : logGenerations()) {
+                if (logGeneration < firstGeneration) {
+                    // covered by the snapshot, left over by a crash before its deletion
+                    Files.delete(logFile(logGeneration));
+                    continue;
+                }
+                replayed += RecordFiles.read(logFile(logGeneration), record -> replay(record, users, attractions));
+                nextGeneration = logGeneration + 1;
+            }
+            // never append to a log which may end with a torn record
+            openLog(nextGeneration);
+            writer.execute(this::writeLog);
+            logging = true;
+            logger.info("Restored " + users.size() + " users from " + directory + ", replaying " + replayed
+                    + " logged changes, in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load the user store " + directory, e);
+        }
+        return new ArrayList<>(users.values());
+    }
+
+    private void replay(ByteBuffer record, Map<UUID, RestoredUser> users, Map<String, Attraction> attractions) {
+        byte type = record.get();
+        switch (type) {
+            case UserCodec.USER -> {
+                RestoredUser restored = UserCodec.readUser(record, retention, attractions);
+                users.putIfAbsent(restored.user().getUserId(), restored);
+            }
+            case UserCodec.LOCATION -> UserCodec.readLocation(record, users);
+            case UserCodec.REWARD -> {
+                UUID userId = RecordBuffer.getUuid(record);
+                RestoredUser restored = users.get(userId);
+                if (restored != null) {
+                    restored.rewards().add(UserCodec.readReward(record, userId, attractions));
+                }
+            }
+            default -> throw new IllegalStateException("Unknown user store record type " + type);
+        }
+    }
+
+    /**
+     * Log a new user
+     *
+     * @param user the user, saved with its current locations and rewards
+     */
+    public void appendUser(User user) {
+        append(UserCodec.user(new RecordBuffer().putByte(UserCodec.USER), user));
+    }
+
+    /**
+     * Log new users, then register them, without a snapshot switching logs in between
+     * The users are either collected by a snapshot, or logged to the log following it, and their records are queued
+     * before any change made to them once registered.
+     *
+     * @param users    the new users, saved with their current locations and rewards
+     * @param register makes the users visible to the users supplier of the snapshots
+     */
+    public void appendUsers(Collection<User> users, Runnable register) {
+        synchronized (registrationLock) {
+            users.forEach(this::appendUser);
+            register.run();
+        }
+    }
+
+    /**
+     * Log a location appended to the history of a user
+     * Called while the history is locked, see User.addToVisitedLocations, so that the log holds the locations
+     * of a user in sequence order.
+     *
+     * @param user            the user
+     * @param sequence        the sequence number of the location in the history
+     * @param visitedLocation the location
+     */
+    public void appendLocation(User user, long sequence, VisitedLocation visitedLocation) {
+        append(UserCodec.location(new RecordBuffer(LOCATION_RECORD_SIZE).putByte(UserCodec.LOCATION),
+                user.getUserId(), sequence, visitedLocation));
+    }
+
+    /**
+     * Log a reward added to a user, to be registered as a RewardsService reward listener
+     *
+     * @param user       the user
+     * @param userReward the reward
+     */
+    public void appendReward(User user, UserReward userReward) {
+        append(UserCodec.reward(new RecordBuffer().putByte(UserCodec.REWARD).putUuid(user.getUserId()), userReward));
+    }
+
+    /**
+     * Queue a record for the log writer, blocking while the queue is full
+     * Records are ignored before the store is loaded and once it is closed.
+     */
+    private void append(RecordBuffer record) {
+        if (!logging) {
+            return;
+        }
+        try {
+            logQueue.put(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while logging a change to the user store, it is left to the next snapshot");
+        }
+    }
+
+    /**
+     * Write the queued records to the current log, batch by batch, until END_OF_LOG
+     */
+    private void writeLog() {
+        List<RecordBuffer> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(logQueue.take());
+                logQueue.drainTo(batch);
+                synchronized (this) {
+                    for (RecordBuffer record : batch) {
+                        if (record == END_OF_LOG) {
+                            return;
+                        }
+                        write(record);
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write a record to the current log
+     * A failure is only logged: the change is still in memory, and saved by the next snapshot.
+     */
+    private void write(RecordBuffer record) {
+        if (log == null) {
+            return;
+        }
+        try {
+            RecordFiles.write(log, record);
+        } catch (IOException e) {
+            logger.error("Failed to log a change to the user store, it is left to the next snapshot", e);
+        }
+    }
+
+    /**
+     * Write the logged changes still buffered by the writer
+     */
+    public synchronized void flush() {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.flush();
+        } catch (IOException e) {
+            logger.error("Failed to flush the user store log", e);
+        }
+    }
+
+    /**
+     * Write a snapshot of the users and delete the logs it covers
+     * Changes made while the snapshot is written go to the new log, some of them being also in the snapshot.
+     *
+     * @param users the users to save
+     */
+    public void snapshot(Collection<User> users) {
+        snapshot(() -> users);
+    }
+
+    /**
+     * Write a snapshot of the users and delete the logs it covers
+     * The users are collected once the new log is open: a user registered before is in the snapshot,
+     * a user registered after is in the new log, see appendUsers.
+     *
+     * @param usersSupplier supplies the users to save
+     */
+    public void snapshot(Supplier<? extends Collection<User>> usersSupplier) {
+        synchronized (snapshotLock) {
+            long start = System.nanoTime();
+            long snapshotGeneration;
+            Collection<User> users;
+            synchronized (registrationLock) {
+                synchronized (this) {
+                    if (log == null) {
+                        throw new IllegalStateException("The user store is not loaded or is closed");
+                    }
+                    snapshotGeneration = generation + 1;
+                    closeLog();
+                    openLog(snapshotGeneration);
+                }
+                users = usersSupplier.get();
+            }
+            Path temporaryFile = directory.resolve(SNAPSHOT_FILE + ".tmp");
+            try {
+                try (RecordFiles.MappedWriter writer = new RecordFiles.MappedWriter(temporaryFile)) {
+                    writer.write(UserCodec.header(snapshotBuffer, snapshotGeneration));
+                    for (User user : users) {
+                        writer.write(UserCodec.user(snapshotBuffer.clear(), user));
+                    }
+                }
+                Files.move(temporaryFile, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+                for (long logGeneration : logGenerations()) {
+                    if (logGeneration < snapshotGeneration) {
+                        Files.delete(logFile(logGeneration));
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to write a snapshot of the user store " + directory, e);
+            }
+            logger.debug("Saved " + users.size() + " users to " + directory + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+        }
+    }
+
+    /**
+     * Write a snapshot every interval and flush the log every FLUSH_INTERVAL, in the background
+     *
+     * @param users    supplies the users to save
+     * @param interval the time between two snapshots
+     */
+    public void scheduleSnapshots(Supplier<? extends Collection<User>> users, Duration interval) {
+        long intervalMillis = interval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot(users);
+            } catch (RuntimeException e) {
+                logger.error("Failed to write a snapshot of the user store", e);
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        long flushMillis = FLUSH_INTERVAL.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the background snapshots, write the queued changes and close the log, changes logged afterwards
+     * being ignored
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            if (logging) {
+                logging = false;
+                logQueue.put(END_OF_LOG);
+            }
+            writer.shutdown();
+            if (!writer.awaitTermination(WRITER_CLOSE_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                logger.warn("User store log not written in " + WRITER_CLOSE_TIMEOUT + ", dropping the queued changes");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            writer.shutdownNow();
+        }
+        synchronized (this) {
+            closed = true;
+            closeLog();
+        }
+    }
+
+    private void openLog(long logGeneration) {
+        try {
+            log = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(logFile(logGeneration),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), LOG_BUFFER_SIZE));
+            generation = logGeneration;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the user store log " + logGeneration, e);
+        }
+    }
+
+    private void closeLog() {
+        if (log == null) {
+            return;
+        }
+        try {
+            log.close();
+        } catch (IOException e) {
+            logger.error("Failed to close the user store log", e);
+        }
+        log = null;
+    }
+
+    private Path logFile(long logGeneration) {
+        return directory.resolve(String.format("%s%020d%s", LOG_PREFIX, logGeneration, LOG_SUFFIX));
+    }
+
+    private List<Long> logGenerations() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(LOG_PREFIX) && name.endsWith(LOG_SUFFIX))
+                    .map(name -> name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length()))
+                    .map(Long::parseLong)
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.openclassrooms.tourguide.tracker;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -14,18 +17,51 @@ import com.openclassrooms.tourguide.user.User;
 
 /**
  * Tracker is a thread that tracks the location of users every 5 minutes.
+ * Users are split into shards, and the shards are tracked one after the other at a fixed rate,
+ * so that the GPS requests are spread evenly across the polling interval.
+ * Each pass tracks the users registered when it starts: internal users still pending in lazy mode are tracked
+ * from the pass following their generation.
  */
 public class Tracker extends Thread {
+    public static final Duration DEFAULT_POLLING_INTERVAL = Duration.ofMinutes(5);
+    public static final int DEFAULT_SHARD_COUNT = 60;
+
     private Logger logger = LoggerFactory.getLogger(Tracker.class);
-    private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(5);
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
+    private final long trackingPollingIntervalNanos;
+    private final int shardCount;
+    private final ExecutorService executorService;
+    private final boolean ownsExecutorService;
     private final TourGuideService tourGuideService;
-    private boolean stop = false;
+    private final TrackerMetrics metrics = new TrackerMetrics();
+    private final Future<?> trackingTask;
+    private volatile boolean stop = false;
 
     public Tracker(TourGuideService tourGuideService) {
+        this(tourGuideService, Executors.newSingleThreadExecutor(), true, DEFAULT_POLLING_INTERVAL, DEFAULT_SHARD_COUNT);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param tourGuideService the tour guide service
+     * @param executorService  the shared executor running the tracker loop
+     * @param pollingInterval  the time between two locations of the same user
+     * @param shardCount       the number of shards the users are split into
+     */
+    public Tracker(TourGuideService tourGuideService, ExecutorService executorService, Duration pollingInterval,
+                   int shardCount) {
+        this(tourGuideService, executorService, false, pollingInterval, shardCount);
+    }
+
+    private Tracker(TourGuideService tourGuideService, ExecutorService executorService, boolean ownsExecutorService,
+                    Duration pollingInterval, int shardCount) {
         this.tourGuideService = tourGuideService;
+        this.executorService = executorService;
+        this.ownsExecutorService = ownsExecutorService;
+        this.trackingPollingIntervalNanos = pollingInterval.toNanos();
+        this.shardCount = Math.max(1, shardCount);
 
-        executorService.submit(this);
+        trackingTask = executorService.submit(this);
     }
 
     /**
@@ -33,36 +69,114 @@ public class Tracker extends Thread {
      */
     public void stopTracking() {
         stop = true;
-        executorService.shutdownNow();
+        trackingTask.cancel(true);
+        if (ownsExecutorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Get the lag, overrun and duration metrics of the tracker
+     *
+     * @return the tracker metrics
+     */
+    public TrackerMetrics getMetrics() {
+        return metrics;
     }
 
     /**
      * Run method of the Tracker thread
+     * Each pass gives every shard a slot of pollingInterval / shards, starting at a fixed rate.
+     * A shard running late does not shift the schedule: the next shards start without waiting until it catches up.
+     * When the tracker is more than a whole interval behind, the schedule restarts from now.
      */
     @Override
     public void run() {
-        StopWatch stopWatch = new StopWatch();
+        long nextSlot = System.nanoTime();
         while (true) {
             if (Thread.currentThread().isInterrupted() || stop) {
                 logger.debug("Tracker stopping");
                 break;
             }
 
-            List<User> users = tourGuideService.getAllUsers();
-            logger.debug("Begin Tracker. Tracking " + users.size() + " users.");
-            stopWatch.start();
-            tourGuideService.trackUsersLocation(users);
-
-            stopWatch.stop();
-            logger.debug("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
-            stopWatch.reset();
-            try {
-                logger.debug("Tracker sleeping");
-                TimeUnit.SECONDS.sleep(trackingPollingInterval);
-            } catch (InterruptedException e) {
-                break;
+            List<User> users = tourGuideService.getRegisteredUsers();
+            List<List<User>> shards = split(users);
+            long slotNanos = trackingPollingIntervalNanos / shards.size();
+            logger.debug("Begin Tracker. Tracking " + users.size() + " users in " + shards.size() + " shards.");
+            long passStart = System.nanoTime();
+
+            for (List<User> shard : shards) {
+                if (stop) {
+                    break;
+                }
+                long shardStart = System.nanoTime();
+                long lagMillis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, shardStart - nextSlot));
+                if (shardStart - nextSlot > trackingPollingIntervalNanos) {
+                    nextSlot = shardStart;
+                }
+                AtomicInteger trackedUsers = new AtomicInteger();
+                tourGuideService.trackUsersLocation(shard, (user, visitedLocation) -> trackedUsers.incrementAndGet());
+                long durationNanos = System.nanoTime() - shardStart;
+                metrics.recordShard(trackedUsers.get(), lagMillis, TimeUnit.NANOSECONDS.toMillis(durationNanos),
+                        durationNanos > slotNanos);
+
+                nextSlot += slotNanos;
+                if (!sleepUntil(nextSlot)) {
+                    logger.debug("Tracker stopping");
+                    return;
+                }
             }
+
+            if (stop) {
+                // an interrupted pass is not a pass
+                continue;
+            }
+            long passMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - passStart);
+            metrics.recordPass(passMillis);
+            logger.debug("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(passMillis) + " seconds, max lag "
+                    + metrics.getMaxLagMillis() + " ms, " + metrics.getOverruns() + " overruns.");
         }
 
     }
+
+    /**
+     * Split the users into shards, each user always landing in the same shard
+     *
+     * @param users the users to split
+     * @return the non-empty shards, or a single empty shard when there is no user
+     */
+    private List<List<User>> split(List<User> users) {
+        int count = Math.max(1, Math.min(shardCount, users.size()));
+        List<List<User>> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shards.add(new ArrayList<>(users.size() / count + 1));
+        }
+        for (User user : users) {
+            shards.get(Math.floorMod(user.getUserId().hashCode(), count)).add(user);
+        }
+        shards.removeIf(List::isEmpty);
+        if (shards.isEmpty()) {
+            shards.add(List.of());
+        }
+        return shards;
+    }
+
+    /**
+     * Sleep until a deadline
+     *
+     * @param deadline the deadline, in System.nanoTime() time
+     * @return false if the tracker has been interrupted
+     */
+    private boolean sleepUntil(long deadline) {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return !Thread.currentThread().isInterrupted();
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
 }
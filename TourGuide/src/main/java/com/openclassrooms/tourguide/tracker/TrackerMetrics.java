@@ -0,0 +1,124 @@
+package com.openclassrooms.tourguide.tracker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * TrackerMetrics records the schedule adherence of the Tracker.
+ * Lag is how late a shard started compared to its slot, an overrun is a shard that took longer than its slot.
+ * Once bound to a registry, the shards and passes are also published as "tourguide.tracker.*" meters.
+ */
+public class TrackerMetrics implements MeterBinder {
+    private final AtomicLong passes = new AtomicLong();
+    private final AtomicLong trackedUsers = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+    private final AtomicLong lastShardDurationMillis = new AtomicLong();
+    private final AtomicLong lastPassDurationMillis = new AtomicLong();
+    // set once bound, the shards may be recorded before
+    private volatile Timer shardTimer;
+    private volatile Timer passTimer;
+    private volatile DistributionSummary lagSummary;
+
+    /**
+     * Register the tracker meters: pass and shard duration timers, a lag distribution,
+     * counters of passes, tracked users and overruns, and gauges of the last values
+     *
+     * @param registry the registry
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // before the shard timer, which tells recordShard the meters are bound
+        lagSummary = DistributionSummary.builder("tourguide.tracker.lag")
+                .description("Delay between the slot of a shard and its start")
+                .baseUnit("milliseconds")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        shardTimer = Timer.builder("tourguide.tracker.shard.duration")
+                .description("Time taken to track a shard of users")
+                .publishPercentileHistogram()
+                .register(registry);
+        passTimer = Timer.builder("tourguide.tracker.pass.duration")
+                .description("Time taken to track every user once")
+                .publishPercentileHistogram()
+                .register(registry);
+        FunctionCounter.builder("tourguide.tracker.passes", passes, AtomicLong::get)
+                .description("Tracking passes completed")
+                .register(registry);
+        FunctionCounter.builder("tourguide.tracker.tracked.users", trackedUsers, AtomicLong::get)
+                .description("User locations tracked")
+                .register(registry);
+        FunctionCounter.builder("tourguide.tracker.overruns", overruns, AtomicLong::get)
+                .description("Shards that took longer than their slot")
+                .register(registry);
+        Gauge.builder("tourguide.tracker.lag.last", lastLagMillis, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("tourguide.tracker.lag.max", maxLagMillis, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .register(registry);
+        Gauge.builder("tourguide.tracker.pass.duration.last", lastPassDurationMillis, AtomicLong::get)
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+
+    void recordShard(int users, long lagMillis, long durationMillis, boolean overrun) {
+        Timer timer = shardTimer;
+        if (timer != null) {
+            timer.record(durationMillis, TimeUnit.MILLISECONDS);
+            lagSummary.record(lagMillis);
+        }
+        trackedUsers.addAndGet(users);
+        lastLagMillis.set(lagMillis);
+        maxLagMillis.accumulateAndGet(lagMillis, Math::max);
+        lastShardDurationMillis.set(durationMillis);
+        if (overrun) {
+            overruns.incrementAndGet();
+        }
+    }
+
+    void recordPass(long durationMillis) {
+        Timer timer = passTimer;
+        if (timer != null) {
+            timer.record(durationMillis, TimeUnit.MILLISECONDS);
+        }
+        passes.incrementAndGet();
+        lastPassDurationMillis.set(durationMillis);
+    }
+
+    public long getPasses() {
+        return passes.get();
+    }
+
+    public long getTrackedUsers() {
+        return trackedUsers.get();
+    }
+
+    public long getOverruns() {
+        return overruns.get();
+    }
+
+    public long getLastLagMillis() {
+        return lastLagMillis.get();
+    }
+
+    public long getMaxLagMillis() {
+        return maxLagMillis.get();
+    }
+
+    public long getLastShardDurationMillis() {
+        return lastShardDurationMillis.get();
+    }
+
+    public long getLastPassDurationMillis() {
+        return lastPassDurationMillis.get();
+    }
+}
@@ -0,0 +1,66 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.Date;
+import java.util.UUID;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Immutable batch of locations stored column by column in primitive arrays.
+ * Scanning the latitudes and longitudes does not dereference any object;
+ * VisitedLocation objects are only created on demand.
+ */
+public final class LocationColumns {
+    static final LocationColumns EMPTY = new LocationColumns(new double[0], new double[0], new long[0]);
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final long[] times;
+
+    /**
+     * Constructor, taking ownership of the arrays
+     *
+     * @param latitudes  the latitudes
+     * @param longitudes the longitudes
+     * @param times      the times of the visits, in milliseconds since the epoch
+     */
+    public LocationColumns(double[] latitudes, double[] longitudes, long[] times) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.times = times;
+    }
+
+    public int size() {
+        return latitudes.length;
+    }
+
+    public double latitude(int index) {
+        return latitudes[index];
+    }
+
+    public double longitude(int index) {
+        return longitudes[index];
+    }
+
+    /**
+     * Get the time of a location
+     *
+     * @param index the index of the location
+     * @return the time of the visit, in milliseconds since the epoch
+     */
+    public long time(int index) {
+        return times[index];
+    }
+
+    /**
+     * Build the VisitedLocation of an entry
+     *
+     * @param userId the id of the user owning the locations
+     * @param index  the index of the location
+     * @return a new VisitedLocation
+     */
+    public VisitedLocation toVisitedLocation(UUID userId, int index) {
+        return new VisitedLocation(userId, new Location(latitudes[index], longitudes[index]), new Date(times[index]));
+    }
+}
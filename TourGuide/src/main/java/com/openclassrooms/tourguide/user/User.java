@@ -1,13 +1,24 @@
 package com.openclassrooms.tourguide.user;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongConsumer;
 
+import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import tripPricer.Provider;
+import com.openclassrooms.tourguide.attraction.AttractionOrdinals;
 
 /**
  * User class
@@ -18,16 +29,37 @@ public class User {
     private String phoneNumber;
     private String emailAddress;
     private Date latestLocationTimestamp;
-    private final List<VisitedLocation> visitedLocations = new ArrayList<>();
+    private final VisitedLocationHistory visitedLocations;
     private final List<UserReward> userRewards = new CopyOnWriteArrayList<>();
+    // ordinals of the rewarded attractions, see AttractionOrdinals
+    private final BitSet rewardedAttractions = new BitSet();
+    // running aggregates of userRewards, updated with it under the rewardedAttractions lock
+    private final AtomicInteger rewardPointsTotal = new AtomicInteger();
+    private final ConcurrentMap<String, Integer> rewardPointsByState = new ConcurrentHashMap<>();
     private UserPreferences userPreferences = new UserPreferences();
     private List<Provider> tripDeals = new ArrayList<>();
+    private final Lock rewardsLock = new ReentrantLock();
 
     public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
+        this(userId, userName, phoneNumber, emailAddress, VisitedLocationHistory.Retention.DEFAULT);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param userId           the user id
+     * @param userName         the user name
+     * @param phoneNumber      the phone number
+     * @param emailAddress     the email address
+     * @param historyRetention how many visited locations are kept
+     */
+    public User(UUID userId, String userName, String phoneNumber, String emailAddress,
+                VisitedLocationHistory.Retention historyRetention) {
         this.userId = userId;
         this.userName = userName;
         this.phoneNumber = phoneNumber;
         this.emailAddress = emailAddress;
+        this.visitedLocations = new VisitedLocationHistory(userId, historyRetention);
     }
 
     public UUID getUserId() {
@@ -62,11 +94,54 @@ public class User {
         return latestLocationTimestamp;
     }
 
-    public void addToVisitedLocations(VisitedLocation visitedLocation) {
-        visitedLocations.add(visitedLocation);
+    /**
+     * Add a visited location
+     *
+     * @param visitedLocation the location
+     * @return the sequence number of the location in the history
+     */
+    public long addToVisitedLocations(VisitedLocation visitedLocation) {
+        return visitedLocations.add(visitedLocation);
+    }
+
+    /**
+     * Add a visited location, then pass its sequence number to a callback before any other location is added
+     *
+     * @param visitedLocation the location
+     * @param onAdded         called with the sequence number of the location, see VisitedLocationHistory.add
+     * @return the sequence number of the location in the history
+     */
+    public long addToVisitedLocations(VisitedLocation visitedLocation, LongConsumer onAdded) {
+        return visitedLocations.add(visitedLocation, onAdded);
     }
 
+    /**
+     * Add a visited location without building a VisitedLocation
+     *
+     * @param latitude  the latitude
+     * @param longitude the longitude
+     * @param time      the time of the visit, in milliseconds since the epoch
+     * @return the sequence number of the location in the history
+     */
+    public long addToVisitedLocations(double latitude, double longitude, long time) {
+        return visitedLocations.add(latitude, longitude, time);
+    }
+
+    /**
+     * Get a copy of the visited locations history
+     *
+     * @return the retained visited locations, oldest first
+     */
     public List<VisitedLocation> getVisitedLocations() {
+        return visitedLocations.toList();
+    }
+
+    /**
+     * Get the history of the visited locations itself, to save or restore it
+     *
+     * @return the history
+     */
+    public VisitedLocationHistory getVisitedLocationHistory() {
         return visitedLocations;
     }
 
@@ -74,14 +149,116 @@ public class User {
         visitedLocations.clear();
     }
 
-    public void addUserReward(UserReward userReward) {
-        if (userRewards.stream().noneMatch(r -> r.attraction.attractionName.equals(userReward.attraction.attractionName))) {
+    /**
+     * Get the visited locations added since the last call, and move the high-water mark after them
+     *
+     * @return the visited locations not yet evaluated for rewards
+     */
+    public List<VisitedLocation> pollNewVisitedLocations() {
+        LocationColumns newLocations = pollNewLocationColumns();
+        List<VisitedLocation> locations = new ArrayList<>(newLocations.size());
+        for (int i = 0; i < newLocations.size(); i++) {
+            locations.add(newLocations.toVisitedLocation(userId, i));
+        }
+        return locations;
+    }
+
+    /**
+     * Get the visited locations added since the last call as primitive columns, and move the high-water mark after them
+     *
+     * @return the visited locations not yet evaluated for rewards
+     */
+    public LocationColumns pollNewLocationColumns() {
+        return visitedLocations.pollNew();
+    }
+
+    /**
+     * Get the visited locations added since the last poll, without moving the high-water mark
+     *
+     * @return the visited locations not yet evaluated for rewards, to commit with commitPolledLocations
+     */
+    public VisitedLocationHistory.Poll peekNewLocations() {
+        return visitedLocations.peekNew();
+    }
+
+    /**
+     * Move the high-water mark after the locations of a poll, once they have been evaluated for rewards
+     *
+     * @param poll the poll returned by peekNewLocations
+     */
+    public void commitPolledLocations(VisitedLocationHistory.Poll poll) {
+        visitedLocations.commit(poll);
+    }
+
+    /**
+     * Get the lock held during a reward pass, so that concurrent passes on the same user are serialized
+     *
+     * @return the rewards lock
+     */
+    public Lock getRewardsLock() {
+        return rewardsLock;
+    }
+
+    /**
+     * Add a reward, unless the user has already been rewarded for its attraction
+     * The reward points aggregates are updated with the points of the reward at the time it is added.
+     *
+     * @param userReward the reward
+     * @return true if the reward has been added
+     */
+    public boolean addUserReward(UserReward userReward) {
+        int ordinal = AttractionOrdinals.of(userReward.attraction);
+        synchronized (rewardedAttractions) {
+            if (rewardedAttractions.get(ordinal)) {
+                return false;
+            }
+            rewardedAttractions.set(ordinal);
             userRewards.add(userReward);
+            int points = userReward.getRewardPoints();
+            rewardPointsTotal.addAndGet(points);
+            rewardPointsByState.merge(userReward.attraction.state, points, Integer::sum);
+            return true;
+        }
+    }
+
+    /**
+     * Get the sum of the reward points of the user, without scanning the rewards
+     *
+     * @return the reward points total
+     */
+    public int getRewardPointsTotal() {
+        return rewardPointsTotal.get();
+    }
+
+    /**
+     * Get the sum of the reward points of the user per state of the rewarded attractions
+     *
+     * @return an unmodifiable view of the reward points by state
+     */
+    public Map<String, Integer> getRewardPointsByState() {
+        return Collections.unmodifiableMap(rewardPointsByState);
+    }
+
+    /**
+     * Check if the user has already been rewarded for an attraction
+     *
+     * @param attraction the attraction
+     * @return true if a reward exists for this attraction, false otherwise
+     */
+    public boolean hasRewardForAttraction(Attraction attraction) {
+        int ordinal = AttractionOrdinals.of(attraction);
+        synchronized (rewardedAttractions) {
+            return rewardedAttractions.get(ordinal);
         }
     }
 
+    /**
+     * Get the rewards of the user, added through addUserReward only
+     *
+     * @return an unmodifiable view of the rewards
+     */
     public List<UserReward> getUserRewards() {
-        return userRewards;
+        return Collections.unmodifiableList(userRewards);
     }
 
     public UserPreferences getUserPreferences() {
@@ -92,8 +269,13 @@ public class User {
         this.userPreferences = userPreferences;
     }
 
+    /**
+     * Get the last visited location
+     *
+     * @return the last visited location, or null if the user has none
+     */
     public VisitedLocation getLastVisitedLocation() {
-        return visitedLocations.get(visitedLocations.size() - 1);
+        return visitedLocations.getLast();
     }
 
     public void setTripDeals(List<Provider> tripDeals) {
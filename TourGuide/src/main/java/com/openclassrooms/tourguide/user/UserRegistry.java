@@ -0,0 +1,129 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Thread-safe registry of the users, indexed by userName and by userId.
+ * Reads never lock, writes are serialized. Users are appended to an array shared by all snapshots,
+ * so taking a snapshot of the whole population costs O(1) instead of copying every reference.
+ * Users cannot be removed.
+ */
+public class UserRegistry {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final ConcurrentMap<String, User> usersByName = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, User> usersById = new ConcurrentHashMap<>();
+    private volatile Snapshot snapshot = new Snapshot(new User[INITIAL_CAPACITY], 0);
+
+    /**
+     * Add a user if no user with the same userName or userId exists
+     *
+     * @param user the user to add
+     * @return true if the user has been added, false if the userName or the userId is already taken
+     */
+    public synchronized boolean add(User user) {
+        if (usersByName.containsKey(user.getUserName()) || usersById.containsKey(user.getUserId())) {
+            return false;
+        }
+        publish(List.of(user));
+        return true;
+    }
+
+    /**
+     * Add users in bulk, skipping those whose userName or userId is already taken
+     * The users array is grown and published once for the whole batch.
+     *
+     * @param users the users to add
+     * @return the number of users added
+     */
+    public synchronized int addAll(List<User> users) {
+        List<User> added = new ArrayList<>(users.size());
+        Set<String> addedNames = new HashSet<>();
+        Set<UUID> addedIds = new HashSet<>();
+        for (User user : users) {
+            if (!usersByName.containsKey(user.getUserName()) && !usersById.containsKey(user.getUserId())
+                    && addedNames.add(user.getUserName()) && addedIds.add(user.getUserId())) {
+                added.add(user);
+            }
+        }
+        publish(added);
+        return added.size();
+    }
+
+    /**
+     * Append new users to the snapshot array, then index them, so that a user found by name or id
+     * is always in the snapshots taken afterwards
+     * Called while holding the lock of the registry, the only one writing the maps and the snapshot.
+     */
+    private void publish(List<User> added) {
+        Snapshot current = snapshot;
+        User[] allUsers = current.users;
+        int size = current.size + added.size();
+        if (size > allUsers.length) {
+            allUsers = Arrays.copyOf(allUsers, Math.max(size, allUsers.length * 2));
+        }
+        for (int i = 0; i < added.size(); i++) {
+            allUsers[current.size + i] = added.get(i);
+        }
+        snapshot = new Snapshot(allUsers, size);
+        for (User user : added) {
+            usersByName.putIfAbsent(user.getUserName(), user);
+            usersById.putIfAbsent(user.getUserId(), user);
+        }
+    }
+
+    /**
+     * Get a user by userName
+     *
+     * @param userName the userName
+     * @return the user, or null if not found
+     */
+    public User getByName(String userName) {
+        return usersByName.get(userName);
+    }
+
+    /**
+     * Get a user by userId
+     *
+     * @param userId the userId
+     * @return the user, or null if not found
+     */
+    public User getById(UUID userId) {
+        return usersById.get(userId);
+    }
+
+    /**
+     * Get the number of users
+     *
+     * @return the number of users
+     */
+    public int size() {
+        return snapshot.size;
+    }
+
+    /**
+     * Get an immutable view of the users registered so far
+     * Users added later are not visible in the returned list.
+     *
+     * @return the users, in registration order
+     */
+    public List<User> snapshot() {
+        Snapshot current = snapshot;
+        return Collections.unmodifiableList(Arrays.asList(current.users).subList(0, current.size));
+    }
+
+    /**
+     * Users array and the number of its slots in use.
+     * Slots below size are never written again, so the array can be shared with the next snapshots.
+     */
+    private record Snapshot(User[] users, int size) {
+    }
+}
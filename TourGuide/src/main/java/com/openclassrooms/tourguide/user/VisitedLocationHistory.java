@@ -0,0 +1,349 @@
+package com.openclassrooms.tourguide.user;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.LongConsumer;
+
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+
+/**
+ * Bounded history of the visited locations of a user.
+ * The most recent locations are kept in a ring buffer. Locations evicted from it are down-sampled
+ * into a second ring buffer of older points, so the memory used by a user is capped.
+ * Both rings store latitude, longitude and time in parallel primitive arrays instead of VisitedLocation objects:
+ * VisitedLocation objects are rebuilt for the readers, with the userId of the owner.
+ * Methods are synchronized: the tracker thread can append while request threads read.
+ */
+public class VisitedLocationHistory {
+
+    /**
+     * Retention settings of a history
+     *
+     * @param recentCapacity  number of most recent locations kept
+     * @param archiveCapacity number of older, down-sampled locations kept
+     * @param archiveSampling one evicted recent location out of archiveSampling is archived
+     */
+    public record Retention(int recentCapacity, int archiveCapacity, int archiveSampling) {
+        public static final Retention DEFAULT = new Retention(100, 100, 12);
+
+        public Retention {
+            if (recentCapacity < 1 || archiveCapacity < 0 || archiveSampling < 1) {
+                throw new IllegalArgumentException("Invalid history retention: recent capacity and archive sampling "
+                        + "must be positive, archive capacity must not be negative");
+            }
+        }
+    }
+
+    /**
+     * Content of a history, as saved by a store
+     *
+     * @param archive  the archived locations, oldest first
+     * @param recent   the recent locations, oldest first
+     * @param appended the number of locations ever appended
+     * @param evicted  the number of locations evicted from the recent ring
+     * @param mark     the sequence number of the first location not yet polled
+     */
+    public record State(LocationColumns archive, LocationColumns recent, long appended, long evicted, long mark) {
+    }
+
+    /**
+     * Locations appended since the previous poll, see peekNew
+     *
+     * @param locations the new locations, oldest first
+     * @param end       the sequence number following the last location, the mark committed once they are evaluated
+     */
+    public record Poll(LocationColumns locations, long end) {
+    }
+
+    private final UUID userId;
+    private final Ring recent;
+    private final Ring archive;
+    private final int archiveSampling;
+    // number of locations ever appended, the sequence number of the next location
+    private long appended = 0;
+    // number of locations evicted from the recent ring
+    private long evicted = 0;
+    // sequence number of the first location not yet polled
+    private long mark = 0;
+
+    public VisitedLocationHistory(UUID userId) {
+        this(userId, Retention.DEFAULT);
+    }
+
+    public VisitedLocationHistory(UUID userId, Retention retention) {
+        this.userId = userId;
+        this.recent = new Ring(retention.recentCapacity());
+        this.archive = new Ring(retention.archiveCapacity());
+        this.archiveSampling = retention.archiveSampling();
+    }
+
+    /**
+     * Append a location, evicting the oldest recent location when the ring is full
+     *
+     * @param visitedLocation the location
+     * @return the sequence number of the location
+     */
+    public long add(VisitedLocation visitedLocation) {
+        return add(visitedLocation.location.latitude, visitedLocation.location.longitude,
+                visitedLocation.timeVisited.getTime());
+    }
+
+    /**
+     * Append a location, then pass its sequence number to a callback before any other location is appended
+     *
+     * @param visitedLocation the location
+     * @param onAppended      called with the sequence number of the location, while the history is locked
+     * @return the sequence number of the location
+     */
+    public synchronized long add(VisitedLocation visitedLocation, LongConsumer onAppended) {
+        long sequence = add(visitedLocation);
+        onAppended.accept(sequence);
+        return sequence;
+    }
+
+    /**
+     * Append a location, evicting the oldest recent location when the ring is full
+     *
+     * @param latitude  the latitude
+     * @param longitude the longitude
+     * @param time      the time of the visit, in milliseconds since the epoch
+     * @return the sequence number of the location
+     */
+    public synchronized long add(double latitude, double longitude, long time) {
+        if (recent.isFull()) {
+            if (evicted % archiveSampling == 0) {
+                archive.add(recent.latitude(0), recent.longitude(0), recent.time(0));
+            }
+            evicted++;
+        }
+        recent.add(latitude, longitude, time);
+        return appended++;
+    }
+
+    /**
+     * Get the number of locations ever appended
+     *
+     * @return the sequence number of the next location
+     */
+    public synchronized long getAppendedCount() {
+        return appended;
+    }
+
+    /**
+     * Get the last location
+     *
+     * @return the last location, or null if the history is empty
+     */
+    public synchronized VisitedLocation getLast() {
+        return recent.size == 0 ? null : recent.toVisitedLocation(userId, recent.size - 1);
+    }
+
+    /**
+     * Get the number of locations held
+     *
+     * @return the number of archived and recent locations
+     */
+    public synchronized int size() {
+        return archive.size + recent.size;
+    }
+
+    /**
+     * Get a copy of the history
+     *
+     * @return the archived then the recent locations, oldest first
+     */
+    public synchronized List<VisitedLocation> toList() {
+        List<VisitedLocation> locations = new ArrayList<>(archive.size + recent.size);
+        for (int i = 0; i < archive.size; i++) {
+            locations.add(archive.toVisitedLocation(userId, i));
+        }
+        for (int i = 0; i < recent.size; i++) {
+            locations.add(recent.toVisitedLocation(userId, i));
+        }
+        return locations;
+    }
+
+    /**
+     * Get the locations appended since the previous poll, and move the mark after them
+     * Locations evicted before being polled are skipped.
+     *
+     * @return the new locations, oldest first
+     */
+    public synchronized LocationColumns pollNew() {
+        Poll poll = peekNew();
+        commit(poll);
+        return poll.locations();
+    }
+
+    /**
+     * Get the locations appended since the previous poll, without moving the mark
+     * The mark is moved by commit once the locations have been evaluated, so that a failed evaluation
+     * leaves them to the next poll. Locations evicted before being polled are skipped.
+     *
+     * @return the new locations and the mark to commit after them
+     */
+    public synchronized Poll peekNew() {
+        long firstRecent = appended - recent.size;
+        int from = (int) (Math.max(mark, firstRecent) - firstRecent);
+        return new Poll(recent.copy(from), appended);
+    }
+
+    /**
+     * Move the mark after the locations of a poll
+     *
+     * @param poll the poll whose locations have been evaluated
+     */
+    public synchronized void commit(Poll poll) {
+        mark = Math.max(mark, poll.end());
+    }
+
+    /**
+     * Get a copy of the content of the history, to save it
+     *
+     * @return the locations, counters and poll mark
+     */
+    public synchronized State getState() {
+        return new State(archive.copy(0), recent.copy(0), appended, evicted, mark);
+    }
+
+    /**
+     * Replace the content of the history with a saved one
+     * The locations are not sampled again: when a ring holds fewer locations than saved, its oldest ones are dropped.
+     *
+     * @param state the saved content
+     */
+    public synchronized void restore(State state) {
+        archive.clear();
+        recent.clear();
+        archive.addAll(state.archive());
+        recent.addAll(state.recent());
+        appended = state.appended();
+        evicted = state.evicted();
+        mark = state.mark();
+    }
+
+    /**
+     * Remove every location
+     */
+    public synchronized void clear() {
+        recent.clear();
+        archive.clear();
+        appended = 0;
+        evicted = 0;
+        mark = 0;
+    }
+
+    /**
+     * Bounded ring buffer of locations, stored in parallel primitive arrays
+     * The arrays grow on demand up to the capacity, so that a short history does not pay for the whole capacity.
+     */
+    private static final class Ring {
+        private static final int INITIAL_LENGTH = 4;
+
+        private final int capacity;
+        private double[] latitudes;
+        private double[] longitudes;
+        private long[] times;
+        private int head = 0;
+        private int size = 0;
+
+        private Ring(int capacity) {
+            this.capacity = capacity;
+            int length = Math.min(capacity, INITIAL_LENGTH);
+            this.latitudes = new double[length];
+            this.longitudes = new double[length];
+            this.times = new long[length];
+        }
+
+        private boolean isFull() {
+            return size == capacity;
+        }
+
+        /**
+         * Append a location, overwriting the oldest one when the ring is full
+         */
+        private void add(double latitude, double longitude, long time) {
+            if (capacity == 0) {
+                return;
+            }
+            int slot;
+            if (isFull()) {
+                slot = head;
+                head = (head + 1) % capacity;
+            } else {
+                if (size == latitudes.length) {
+                    grow();
+                }
+                slot = (head + size++) % latitudes.length;
+            }
+            latitudes[slot] = latitude;
+            longitudes[slot] = longitude;
+            times[slot] = time;
+        }
+
+        private void addAll(LocationColumns locations) {
+            for (int i = 0; i < locations.size(); i++) {
+                add(locations.latitude(i), locations.longitude(i), locations.time(i));
+            }
+        }
+
+        /**
+         * Double the length of the arrays, up to the capacity
+         * The ring only wraps once full, so the locations are still in slots 0 to size - 1.
+         */
+        private void grow() {
+            int length = Math.min(capacity, latitudes.length * 2);
+            latitudes = Arrays.copyOf(latitudes, length);
+            longitudes = Arrays.copyOf(longitudes, length);
+            times = Arrays.copyOf(times, length);
+        }
+
+        private int slot(int index) {
+            return (head + index) % latitudes.length;
+        }
+
+        private double latitude(int index) {
+            return latitudes[slot(index)];
+        }
+
+        private double longitude(int index) {
+            return longitudes[slot(index)];
+        }
+
+        private long time(int index) {
+            return times[slot(index)];
+        }
+
+        private VisitedLocation toVisitedLocation(UUID userId, int index) {
+            int slot = slot(index);
+            return new VisitedLocation(userId, new Location(latitudes[slot], longitudes[slot]), new Date(times[slot]));
+        }
+
+        private LocationColumns copy(int from) {
+            return from >= size ? LocationColumns.EMPTY : copy(from, size);
+        }
+
+        private LocationColumns copy(int from, int to) {
+            int length = to - from;
+            double[] copiedLatitudes = new double[length];
+            double[] copiedLongitudes = new double[length];
+            long[] copiedTimes = new long[length];
+            for (int i = 0; i < length; i++) {
+                int slot = slot(from + i);
+                copiedLatitudes[i] = latitudes[slot];
+                copiedLongitudes[i] = longitudes[slot];
+                copiedTimes[i] = times[slot];
+            }
+            return new LocationColumns(copiedLatitudes, copiedLongitudes, copiedTimes);
+        }
+
+        private void clear() {
+            head = 0;
+            size = 0;
+        }
+    }
+}
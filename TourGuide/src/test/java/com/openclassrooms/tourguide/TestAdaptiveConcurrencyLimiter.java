@@ -0,0 +1,98 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.configuration.AdaptiveConcurrencyLimiter;
+
+public class TestAdaptiveConcurrencyLimiter {
+
+    /**
+     * Run calls one batch of limit concurrent calls at a time, each one lasting latencyMillis on the clock
+     */
+    private static void runBatches(AdaptiveConcurrencyLimiter limiter, AtomicLong clock, long latencyMillis,
+                                   int batches) throws InterruptedException {
+        for (int batch = 0; batch < batches; batch++) {
+            AdaptiveConcurrencyLimiter.Permit[] permits = new AdaptiveConcurrencyLimiter.Permit[limiter.getLimit()];
+            for (int i = 0; i < permits.length; i++) {
+                permits[i] = limiter.acquire();
+            }
+            clock.addAndGet(Duration.ofMillis(latencyMillis).toNanos());
+            for (AdaptiveConcurrencyLimiter.Permit permit : permits) {
+                permit.release();
+            }
+        }
+    }
+
+    /**
+     * Test the growth of the limit
+     * Given: a limiter starting at 10 concurrent calls
+     * When: the limit is fully used by calls with a steady latency
+     * Then: the limit grows, without exceeding its maximum
+     */
+    @Test
+    public void limitGrowsWhileLatencyIsSteady() throws InterruptedException {
+        // Given
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 10, 1, 20,
+                Duration.ofSeconds(1), 2.0, clock::get);
+
+        // When
+        runBatches(limiter, clock, 100, 50);
+
+        // Then
+        assertEquals(20, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    /**
+     * Test the backoff of the limit
+     * Given: a limiter at 50 concurrent calls, used by calls with a steady latency
+     * When: the latency of the calls becomes ten times higher
+     * Then: the limit backs off, without going below its minimum
+     */
+    @Test
+    public void limitBacksOffWhenLatencyDegrades() throws InterruptedException {
+        // Given
+        AtomicLong clock = new AtomicLong();
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 50, 5, 50,
+                Duration.ofSeconds(1), 2.0, clock::get);
+        runBatches(limiter, clock, 100, 5);
+
+        // When
+        runBatches(limiter, clock, 1_000, 2);
+
+        // Then
+        assertTrue(limiter.getLimit() < 50, "limit " + limiter.getLimit());
+        assertTrue(limiter.getLimit() >= 5, "limit " + limiter.getLimit());
+    }
+
+    /**
+     * Test the rejection of a caller
+     * Given: a limiter allowing one call, with a permit taken
+     * When: another caller asks for a permit
+     * Then: it is rejected after the maximum wait, and the rejection is counted
+     */
+    @Test
+    public void callerIsRejectedAfterMaxWait() throws InterruptedException {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 1,
+                Duration.ofMillis(20), 2.0, System::nanoTime);
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+
+        // When
+        assertThrows(RejectedExecutionException.class, () -> limiter.call(() -> "late"));
+        permit.release();
+
+        // Then
+        assertEquals(1, limiter.getRejectionCount());
+        assertEquals("on time", limiter.call(() -> "on time"));
+    }
+}
@@ -0,0 +1,102 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+
+public class TestAttractionCatalog {
+
+    /**
+     * GpsUtil returning a fixed list of attractions, with new attractionIds on each call like the real one
+     */
+    private static class FixedAttractionsGpsUtil extends GpsUtil {
+        private volatile List<Attraction> attractions;
+
+        private FixedAttractionsGpsUtil(List<Attraction> attractions) {
+            this.attractions = attractions;
+        }
+
+        @Override
+        public List<Attraction> getAttractions() {
+            List<Attraction> copy = new ArrayList<>();
+            attractions.forEach(a -> copy.add(new Attraction(a.attractionName, a.city, a.state, a.latitude, a.longitude)));
+            return copy;
+        }
+    }
+
+    /**
+     * Test refresh
+     * Given: a catalog loaded once
+     * When: the catalog is refreshed without change, then after an attraction has been added
+     * Then: the snapshot is kept in the first case, a new version with a new index is published in the second,
+     * and listeners are notified of the initial load and of the new version
+     */
+    @Test
+    public void refreshPublishesNewVersionOnlyOnChange() {
+        // Given
+        FixedAttractionsGpsUtil gpsUtil = new FixedAttractionsGpsUtil(
+                List.of(new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008)));
+        AttractionCatalog catalog = new AttractionCatalog(gpsUtil);
+        List<AttractionCatalog.Snapshot> published = new CopyOnWriteArrayList<>();
+        catalog.addListener(published::add);
+        AttractionCatalog.Snapshot first = catalog.getSnapshot();
+        UUID firstId = first.attractions().get(0).attractionId;
+
+        // When
+        boolean unchangedRefresh = catalog.refresh();
+        gpsUtil.attractions = List.of(new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008),
+                new Attraction("Jackson Hole", "Jackson Hole", "WY", 43.582767, -110.821999));
+        boolean changedRefresh = catalog.refresh();
+
+        // Then
+        assertFalse(unchangedRefresh);
+        assertTrue(changedRefresh);
+        AttractionCatalog.Snapshot second = catalog.getSnapshot();
+        assertEquals(firstId, first.attractions().get(0).attractionId);
+        assertEquals(first.version() + 1, second.version());
+        assertEquals(1, first.index().getAttractions().size());
+        assertEquals(2, second.index().getAttractions().size());
+        assertEquals(List.of(first, second), published);
+    }
+
+    /**
+     * Test the background refresh
+     * Given: a catalog refreshed every 50 ms
+     * When: the attractions change
+     * Then: the new attractions are published without any reader calling refresh
+     */
+    @Test
+    public void backgroundRefreshPicksUpChanges() throws InterruptedException {
+        // Given
+        FixedAttractionsGpsUtil gpsUtil = new FixedAttractionsGpsUtil(
+                List.of(new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008)));
+        try (AttractionCatalog catalog = new AttractionCatalog(gpsUtil, Duration.ofMillis(50))) {
+            AttractionCatalog.Snapshot first = catalog.getSnapshot();
+
+            // When
+            gpsUtil.attractions = List.of(new Attraction("Jackson Hole", "Jackson Hole", "WY", 43.582767, -110.821999));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (catalog.getSnapshot() == first && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            // Then
+            assertEquals("Jackson Hole", catalog.getAttractions().get(0).attractionName);
+            assertSame(catalog.getSnapshot().index(), catalog.getIndex());
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.attraction.AttractionDistance;
+import com.openclassrooms.tourguide.attraction.AttractionIndex;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+public class TestAttractionIndex {
+
+    /**
+     * Test getCandidates
+     * Given: an index over the attractions and random locations
+     * When: getCandidates is called with various radius
+     * Then: every attraction within the radius is a candidate
+     */
+    @Test
+    public void candidatesContainAllAttractionsWithinRadius() {
+        // Given
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        List<Attraction> attractions = gpsUtil.getAttractions();
+        AttractionIndex index = new AttractionIndex(attractions);
+        Random random = new Random(42);
+
+        for (int i = 0; i < 2000; i++) {
+            Location location = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            double radius = new double[]{10, 200, 1000, 5000}[i % 4];
+
+            // When
+            List<Attraction> candidates = index.getCandidates(location, radius);
+
+            // Then
+            for (Attraction attraction : attractions) {
+                if (rewardsService.getDistance(attraction, location) <= radius) {
+                    assertTrue(candidates.contains(attraction));
+                }
+            }
+        }
+        rewardsService.shutdown();
+    }
+
+    /**
+     * Test getCandidates
+     * Given: an index over the attractions
+     * When: getCandidates is called on an attraction, and with an unbounded radius
+     * Then: the attraction itself is found, and the whole catalog is returned for the unbounded radius
+     */
+    @Test
+    public void candidatesOnAttractionAndUnboundedRadius() {
+        // Given
+        List<Attraction> attractions = new GpsUtil().getAttractions();
+        AttractionIndex index = new AttractionIndex(attractions);
+        Attraction attraction = attractions.get(0);
+
+        // When / Then
+        assertTrue(index.getCandidates(attraction, 0).contains(attraction));
+        assertEquals(attractions.size(), index.getCandidates(attraction, Integer.MAX_VALUE).size());
+    }
+
+    /**
+     * Test getWithin
+     * Given: an index over the attractions and random locations
+     * When: getWithin is called with various radius
+     * Then: exactly the attractions within the radius are returned
+     */
+    @Test
+    public void withinReturnsExactlyAttractionsWithinRadius() {
+        // Given
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        List<Attraction> attractions = gpsUtil.getAttractions();
+        AttractionIndex index = new AttractionIndex(attractions);
+        Random random = new Random(42);
+
+        for (int i = 0; i < 2000; i++) {
+            Location location = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            double radius = new double[]{10, 200, 1000, 5000, Integer.MAX_VALUE}[i % 5];
+
+            // When
+            List<Attraction> within = index.getWithin(location.latitude, location.longitude, radius);
+
+            // Then
+            List<Attraction> expected = attractions.stream()
+                    .filter(attraction -> rewardsService.getDistance(attraction, location) <= radius)
+                    .toList();
+            assertEquals(expected.size(), within.size());
+            assertTrue(within.containsAll(expected));
+        }
+        rewardsService.shutdown();
+    }
+
+    /**
+     * Test getNearest
+     * Given: an index over the attractions and random locations
+     * When: getNearest is called for 5 attractions
+     * Then: the 5 attractions with the smallest distances are returned, nearest first
+     */
+    @Test
+    public void nearestReturnsClosestAttractionsInOrder() {
+        // Given
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        List<Attraction> attractions = gpsUtil.getAttractions();
+        AttractionIndex index = new AttractionIndex(attractions);
+        Random random = new Random(42);
+
+        for (int i = 0; i < 2000; i++) {
+            Location location = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+
+            // When
+            List<AttractionDistance> nearest = index.getNearest(location.latitude, location.longitude, 5);
+
+            // Then
+            List<Double> expected = attractions.stream()
+                    .map(attraction -> rewardsService.getDistance(attraction, location))
+                    .sorted()
+                    .limit(5)
+                    .toList();
+            assertEquals(expected, nearest.stream().map(AttractionDistance::distanceInMiles).toList());
+        }
+        assertEquals(attractions.size(), index.getNearest(0, 0, attractions.size() + 1).size());
+        rewardsService.shutdown();
+    }
+
+}
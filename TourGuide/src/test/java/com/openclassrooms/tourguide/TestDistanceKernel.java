@@ -0,0 +1,57 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.attraction.DistanceKernel;
+import com.openclassrooms.tourguide.service.RewardsService;
+
+public class TestDistanceKernel {
+
+    /**
+     * Test distance and isWithin
+     * Given: a kernel over random points, and random query points
+     * When: the distances are computed by the kernel and by RewardsService.getDistance
+     * Then: both distances are equal, and isWithin matches the exact comparison, also on the threshold
+     */
+    @Test
+    public void kernelMatchesExactDistance() {
+        // Given
+        RewardsService rewardsService = new RewardsService(new GpsUtil(), new RewardCentral());
+        Random random = new Random(42);
+        List<Location> points = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            points.add(new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+        }
+        DistanceKernel kernel = new DistanceKernel(points);
+
+        for (int q = 0; q < 200; q++) {
+            Location location = new Location(random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+            double radius = new double[]{10, 200, 1000, 5000}[q % 4];
+            DistanceKernel.Query query = kernel.query(location.latitude, location.longitude, radius);
+
+            for (int i = 0; i < points.size(); i++) {
+                // When
+                double exact = rewardsService.getDistance(points.get(i), location);
+                double distance = query.distance(i);
+
+                // Then
+                assertEquals(exact, distance);
+                assertEquals(exact <= radius, query.isWithin(i));
+                DistanceKernel.Query onThreshold = kernel.query(location.latitude, location.longitude, exact);
+                assertTrue(onThreshold.isWithin(i));
+            }
+        }
+        rewardsService.shutdown();
+    }
+
+}
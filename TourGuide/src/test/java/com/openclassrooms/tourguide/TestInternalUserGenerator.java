@@ -0,0 +1,143 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.configuration.ClientLimiters;
+import com.openclassrooms.tourguide.configuration.TourGuideExecutors;
+import com.openclassrooms.tourguide.configuration.TourGuideMetrics;
+import com.openclassrooms.tourguide.configuration.TourGuideProperties;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.helper.InternalUserGenerator;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.TrackerMetrics;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.VisitedLocationHistory;
+
+public class TestInternalUserGenerator {
+
+    private static Map<String, User> generate(long seed, int count, int threads) {
+        Map<String, User> users = new ConcurrentHashMap<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        new InternalUserGenerator(seed, VisitedLocationHistory.Retention.DEFAULT, Instant.EPOCH)
+                .generate(count, chunk -> chunk.forEach(user -> users.put(user.getUserName(), user)), executor)
+                .join();
+        executor.shutdown();
+        return users;
+    }
+
+    /**
+     * Test generate
+     * Given: two generators with the same seed
+     * When: both generate users over several chunks, on 4 threads and on a single one
+     * Then: every user is generated once, with the same id and visited locations on both sides
+     */
+    @Test
+    public void sameSeedGeneratesSameUsers() {
+        // Given
+        int count = InternalUserGenerator.CHUNK_SIZE * 2 + 10;
+
+        // When
+        Map<String, User> users = generate(7, count, 4);
+        Map<String, User> replayed = generate(7, count, 1);
+
+        // Then
+        assertEquals(count, users.size());
+        for (int i = 0; i < count; i++) {
+            User user = users.get("internalUser" + i);
+            User replayedUser = replayed.get("internalUser" + i);
+            assertNotNull(user);
+            assertEquals(user.getUserId(), replayedUser.getUserId());
+            assertEquals(3, user.getVisitedLocations().size());
+            assertEquals(user.getVisitedLocations().get(2).location.latitude,
+                    replayedUser.getVisitedLocations().get(2).location.latitude);
+            assertEquals(user.getVisitedLocations().get(2).timeVisited,
+                    replayedUser.getVisitedLocations().get(2).timeVisited);
+        }
+    }
+
+    /**
+     * Test the lazy generation of the internal users
+     * Given: a TourGuideService generating 20 internal users lazily
+     * When: the users are read
+     * Then: the 20 users are there, found by name and by id
+     */
+    @Test
+    public void lazyGenerationOnFirstAccess() {
+        // Given
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(20);
+        TourGuideProperties properties = new TourGuideProperties();
+        properties.getInternalUsers().setGeneration(InternalUserGenerator.Mode.LAZY);
+        properties.getInternalUsers().setSeed(7L);
+        TourGuideExecutors executors = new TourGuideExecutors(properties);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, executors, properties,
+                new TourGuideMetrics(), new ClientLimiters(properties));
+
+        // When
+        List<User> users = tourGuideService.getAllUsers();
+        tourGuideService.shutdown();
+        executors.close();
+        rewardsService.shutdown();
+
+        // Then
+        assertEquals(20, users.size());
+        User user = tourGuideService.getUser("internalUser19");
+        assertNotNull(user);
+        assertEquals(user, tourGuideService.getUserById(user.getUserId()));
+    }
+
+    /**
+     * Test the lazy generation of the internal users
+     * Given: a TourGuideService generating 20 internal users lazily, with a running tracker
+     * When: the tracker completes a pass before any access to the users
+     * Then: no user is generated by the pass, the 20 users being generated on the first access
+     */
+    @Test
+    public void lazyGenerationWaitsForFirstCaller() throws InterruptedException {
+        // Given
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(20);
+        TourGuideProperties properties = new TourGuideProperties();
+        properties.getInternalUsers().setGeneration(InternalUserGenerator.Mode.LAZY);
+        properties.getTracking().setPollingInterval(Duration.ofMillis(50));
+        properties.getTracking().setShards(1);
+        TourGuideExecutors executors = new TourGuideExecutors(properties);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, executors, properties,
+                new TourGuideMetrics(), new ClientLimiters(properties));
+
+        // When
+        TrackerMetrics metrics = tourGuideService.tracker.getMetrics();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (metrics.getPasses() == 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        List<User> registeredBeforeAccess = tourGuideService.getRegisteredUsers();
+        List<User> users = tourGuideService.getAllUsers();
+        tourGuideService.shutdown();
+        executors.close();
+        rewardsService.shutdown();
+
+        // Then
+        assertTrue(metrics.getPasses() >= 1);
+        assertTrue(registeredBeforeAccess.isEmpty());
+        assertEquals(20, users.size());
+    }
+}
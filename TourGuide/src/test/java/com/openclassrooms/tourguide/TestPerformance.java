@@ -3,6 +3,7 @@ package com.openclassrooms.tourguide;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 
@@ -50,7 +51,7 @@ public class TestPerformance {
      * Then: the method should finish within 15 minutes for 100,000 users
      */
     @Test
-    public void highVolumeTrackLocation() {
+    public void highVolumeTrackLocation() throws InterruptedException {
         GpsUtil gpsUtil = new GpsUtil();
         RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
         InternalTestHelper.setInternalUserNumber(100);
@@ -63,9 +64,12 @@ public class TestPerformance {
         stopWatch.start();
 
         tourGuideService.trackUsersLocation(allUsers);
+        // the rewards of the tracked users are calculated by the reward pipeline
+        assertTrue(tourGuideService.getRewardPipeline().awaitIdle(Duration.ofMinutes(15)));
 
         stopWatch.stop();
-        tourGuideService.tracker.stopTracking();
+        tourGuideService.shutdown();
+        rewardsService.shutdown();
 
         System.out.println("highVolumeTrackLocation: Time Elapsed: "
                 + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
@@ -99,7 +103,8 @@ public class TestPerformance {
             assertFalse(user.getUserRewards().isEmpty());
         }
         stopWatch.stop();
-        tourGuideService.tracker.stopTracking();
+        tourGuideService.shutdown();
+        rewardsService.shutdown();
 
         System.out.println("highVolumeGetRewards: Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime())
                 + " seconds.");
@@ -0,0 +1,93 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.dto.AttractionRewardsDto;
+import com.openclassrooms.tourguide.dto.UserRankingDto;
+import com.openclassrooms.tourguide.service.RewardLeaderboard;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+
+public class TestRewardLeaderboard {
+
+    /**
+     * Test getTopUsers and getTopAttractions
+     * Given: 100 000 users rewarded concurrently, user i with i points for one of the attractions
+     * When: the best user gets a second reward, and the top users and attractions are read
+     * Then: the users are ranked by reward points total, and the attractions by number of rewards
+     */
+    @Test
+    public void rankingFollowsRewardPointsTotals() {
+        // Given
+        List<Attraction> attractions = new GpsUtil().getAttractions();
+        RewardLeaderboard leaderboard = new RewardLeaderboard();
+        List<User> users = IntStream.range(0, 100_000)
+                .mapToObj(i -> new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"))
+                .toList();
+        IntStream.range(0, users.size()).parallel().forEach(i ->
+                reward(leaderboard, users.get(i), attractions.get(i % 2), i));
+
+        // When
+        reward(leaderboard, users.get(99_999), attractions.get(2), 5);
+        reward(leaderboard, users.get(0), attractions.get(2), 200_000);
+        List<UserRankingDto> topUsers = leaderboard.getTopUsers(3);
+        List<AttractionRewardsDto> topAttractions = leaderboard.getTopAttractions(2);
+
+        // Then
+        assertEquals(100_000, leaderboard.size());
+        assertEquals(List.of("user0", "user99999", "user99998"),
+                topUsers.stream().map(UserRankingDto::getUserName).toList());
+        assertEquals(List.of(1, 2, 3), topUsers.stream().map(UserRankingDto::getRank).toList());
+        assertEquals(100_004, topUsers.get(1).getRewardPoints());
+        assertEquals(50_000, topAttractions.get(0).getRewardCount());
+        assertEquals(50_000, topAttractions.get(1).getRewardCount());
+    }
+
+    /**
+     * Test the leaderboard fed by the RewardsService
+     * Given: a leaderboard listening to a RewardsService, and a user on an attraction
+     * When: the rewards of the user are calculated twice
+     * Then: the user is ranked once with the points of the reward
+     */
+    @Test
+    public void leaderboardIsFedByRewardsService() {
+        // Given
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        RewardLeaderboard leaderboard = new RewardLeaderboard(rewardsService);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), gpsUtil.getAttractions().get(0), new Date()));
+
+        // When
+        rewardsService.calculateRewards(user);
+        rewardsService.calculateRewards(user);
+
+        // Then
+        List<UserRankingDto> topUsers = leaderboard.getTopUsers(10);
+        assertEquals(1, topUsers.size());
+        assertEquals(user.getUserRewards().get(0).getRewardPoints(), topUsers.get(0).getRewardPoints());
+        assertEquals(1, leaderboard.getTopAttractions(10).get(0).getRewardCount());
+        rewardsService.shutdown();
+    }
+
+    private static void reward(RewardLeaderboard leaderboard, User user, Attraction attraction, int points) {
+        UserReward userReward = new UserReward(new VisitedLocation(user.getUserId(), attraction, new Date()),
+                attraction, points);
+        if (user.addUserReward(userReward)) {
+            leaderboard.onReward(user, userReward);
+        }
+    }
+
+}
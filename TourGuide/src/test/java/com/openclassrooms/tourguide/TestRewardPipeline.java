@@ -0,0 +1,176 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.service.RewardPipeline;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestRewardPipeline {
+
+    /**
+     * RewardsService stub blocking until released, and counting the passes and the maximum concurrency observed
+     */
+    private static class BlockingRewardsService extends RewardsService {
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicInteger passes = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        private BlockingRewardsService() {
+            super(new GpsUtil(), new RewardCentral());
+        }
+
+        @Override
+        public void calculateRewards(User user) {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            passes.incrementAndGet();
+            running.decrementAndGet();
+        }
+    }
+
+    /**
+     * Test submit
+     * Given: a pipeline of 2 workers and a queue of 2 users, with blocked reward passes
+     * When: 10 users are submitted from another thread
+     * Then: the submitter blocks once the workers and the queue are full, and every user is processed once released
+     */
+    @Test
+    public void fullQueueBlocksSubmitter() throws InterruptedException {
+        // Given
+        BlockingRewardsService rewardsService = new BlockingRewardsService();
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        RewardPipeline pipeline = new RewardPipeline(rewardsService, workers, 2, 2);
+        List<User> users = IntStream.range(0, 10)
+                .mapToObj(i -> new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"))
+                .toList();
+        AtomicInteger submitted = new AtomicInteger();
+
+        // When
+        Thread submitter = new Thread(() -> {
+            for (User user : users) {
+                try {
+                    pipeline.submit(user);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                submitted.incrementAndGet();
+            }
+        });
+        submitter.start();
+        TimeUnit.MILLISECONDS.sleep(200);
+        int submittedWhileBlocked = submitted.get();
+        rewardsService.release.countDown();
+        submitter.join(5000);
+
+        // Then
+        assertEquals(4, submittedWhileBlocked);
+        assertTrue(pipeline.awaitIdle(Duration.ofSeconds(5)));
+        assertEquals(10, rewardsService.passes.get());
+        assertEquals(2, rewardsService.maxRunning.get());
+        pipeline.close();
+        workers.shutdown();
+        rewardsService.shutdown();
+    }
+
+    /**
+     * Test submit
+     * Given: a pipeline whose single worker is busy
+     * When: the same user is submitted three times while queued
+     * Then: the user is processed once after the busy pass
+     */
+    @Test
+    public void queuedUserIsNotQueuedTwice() throws InterruptedException {
+        // Given
+        BlockingRewardsService rewardsService = new BlockingRewardsService();
+        ExecutorService workers = Executors.newFixedThreadPool(1);
+        RewardPipeline pipeline = new RewardPipeline(rewardsService, workers, 10, 1);
+        pipeline.submit(new User(UUID.randomUUID(), "busy", "000", "busy@tourGuide.com"));
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(0, 0), new Date()));
+
+        // When
+        pipeline.submit(user);
+        pipeline.submit(user);
+        pipeline.submit(user);
+        boolean idleBeforeRelease = pipeline.awaitIdle(Duration.ofMillis(100));
+        rewardsService.release.countDown();
+
+        // Then
+        assertFalse(idleBeforeRelease);
+        assertTrue(pipeline.awaitIdle(Duration.ofSeconds(5)));
+        assertEquals(2, rewardsService.passes.get());
+        pipeline.close();
+        workers.shutdown();
+        rewardsService.shutdown();
+    }
+
+    /**
+     * Test submit and close
+     * Given: a pipeline of 2 workers with released reward passes
+     * When: 4 threads submit users while the pipeline is closed
+     * Then: every accepted user is either processed or dropped, the pipeline being idle with an empty queue
+     */
+    @Test
+    public void submitRacingCloseLeavesPipelineIdle() throws InterruptedException {
+        // Given
+        BlockingRewardsService rewardsService = new BlockingRewardsService();
+        rewardsService.release.countDown();
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        RewardPipeline pipeline = new RewardPipeline(rewardsService, workers, 16, 2);
+        CountDownLatch started = new CountDownLatch(4);
+
+        // When
+        List<Thread> submitters = IntStream.range(0, 4)
+                .mapToObj(t -> new Thread(() -> {
+                    started.countDown();
+                    try {
+                        for (int i = 0; ; i++) {
+                            pipeline.submit(new User(UUID.randomUUID(), "user" + i, "000", "user@tourGuide.com"));
+                        }
+                    } catch (IllegalStateException | InterruptedException e) {
+                        // closed
+                    }
+                }))
+                .toList();
+        submitters.forEach(Thread::start);
+        started.await();
+        TimeUnit.MILLISECONDS.sleep(50);
+        pipeline.close();
+        for (Thread submitter : submitters) {
+            submitter.join(5000);
+        }
+
+        // Then
+        submitters.forEach(submitter -> assertFalse(submitter.isAlive()));
+        assertTrue(pipeline.awaitIdle(Duration.ofSeconds(5)));
+        assertEquals(0, pipeline.getQueueSize());
+        workers.shutdown();
+        rewardsService.shutdown();
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.service.RewardPointsCache;
+
+public class TestRewardPointsCache {
+
+    /**
+     * Test getRewardPoints
+     * Given: a cache whose loader completes only when released
+     * When: the same points are requested concurrently, then again once loaded
+     * Then: the loader is called once, one miss and the other requests as hits are counted
+     */
+    @Test
+    public void concurrentMissesShareOneLoad() {
+        // Given
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<Integer> release = new CompletableFuture<>();
+        RewardPointsCache cache = new RewardPointsCache((attractionId, userId) -> {
+            loads.incrementAndGet();
+            return release;
+        }, 100, Duration.ofMinutes(1));
+        UUID attractionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        // When
+        List<CompletableFuture<Integer>> results = IntStream.range(0, 20).parallel()
+                .mapToObj(i -> cache.getRewardPoints(attractionId, userId))
+                .toList();
+        release.complete(42);
+        int cached = cache.getRewardPoints(attractionId, userId).join();
+
+        // Then
+        assertEquals(1, loads.get());
+        results.forEach(result -> assertEquals(42, result.join()));
+        assertEquals(42, cached);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(20, cache.getHitCount());
+    }
+
+    /**
+     * Test expiration and eviction
+     * Given: a cache of 2 entries with a 1 minute time-to-live on a manual clock
+     * When: an entry is requested after its expiry, and a third key is loaded
+     * Then: the expired entry is loaded again, and the least recently used entry is evicted
+     */
+    @Test
+    public void entriesExpireAndAreEvicted() {
+        // Given
+        AtomicInteger loads = new AtomicInteger();
+        AtomicLong clock = new AtomicLong();
+        RewardPointsCache cache = new RewardPointsCache(
+                (attractionId, userId) -> CompletableFuture.completedFuture(loads.incrementAndGet()),
+                2, Duration.ofMinutes(1), clock::get);
+        UUID userId = UUID.randomUUID();
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        // When
+        int loaded = cache.getRewardPoints(first, userId).join();
+        clock.addAndGet(Duration.ofMinutes(2).toNanos());
+        int reloaded = cache.getRewardPoints(first, userId).join();
+        cache.getRewardPoints(second, userId).join();
+        cache.getRewardPoints(first, userId).join();
+        cache.getRewardPoints(UUID.randomUUID(), userId).join();
+
+        // Then
+        assertEquals(1, loaded);
+        assertEquals(2, reloaded);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.getRewardPoints(first, userId).join());
+    }
+
+}
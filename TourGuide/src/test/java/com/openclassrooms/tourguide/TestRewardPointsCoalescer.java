@@ -0,0 +1,180 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.service.RewardPointsCoalescer;
+
+public class TestRewardPointsCoalescer {
+
+    /**
+     * RewardCentral stub counting the calls and the maximum concurrency observed
+     */
+    private static class CountingRewardCentral extends RewardCentral {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        @Override
+        public int getAttractionRewardPoints(UUID attractionId, UUID userId) {
+            calls.incrementAndGet();
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                TimeUnit.MILLISECONDS.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return 42;
+        }
+    }
+
+    /**
+     * Test getRewardPoints
+     * Given: a coalescer with a 50 ms batch window
+     * When: the same lookup is requested several times within the window
+     * Then: RewardCentral is called once and every caller gets the points
+     */
+    @Test
+    public void identicalLookupsAreCoalesced() {
+        // Given
+        CountingRewardCentral rewardCentral = new CountingRewardCentral();
+        RewardPointsCoalescer coalescer = new RewardPointsCoalescer(rewardCentral, 10, Duration.ofMillis(50));
+        UUID attractionId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+
+        // When
+        List<CompletableFuture<Integer>> results = IntStream.range(0, 10)
+                .mapToObj(i -> coalescer.getRewardPoints(attractionId, userId))
+                .toList();
+
+        // Then
+        results.forEach(result -> assertEquals(42, result.join()));
+        coalescer.close();
+        assertEquals(1, rewardCentral.calls.get());
+    }
+
+    /**
+     * Test getRewardPoints
+     * Given: a coalescer limited to 4 in-flight calls
+     * When: 40 distinct lookups are requested
+     * Then: all of them complete and RewardCentral never runs more than 4 calls at once
+     */
+    @Test
+    public void inFlightLimitIsRespected() {
+        // Given
+        CountingRewardCentral rewardCentral = new CountingRewardCentral();
+        RewardPointsCoalescer coalescer = new RewardPointsCoalescer(rewardCentral, 4, Duration.ofMillis(1));
+
+        // When
+        List<CompletableFuture<Integer>> results = IntStream.range(0, 40)
+                .mapToObj(i -> coalescer.getRewardPoints(UUID.randomUUID(), UUID.randomUUID()))
+                .toList();
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+        coalescer.close();
+
+        // Then
+        assertEquals(40, rewardCentral.calls.get());
+        assertTrue(rewardCentral.maxRunning.get() <= 4);
+    }
+
+    /**
+     * Test getRewardPoints after close
+     * Given: a closed coalescer
+     * When: a lookup is requested
+     * Then: it fails at once instead of waiting for a dispatcher that is gone, and RewardCentral is not called
+     */
+    @Test
+    public void lookupAfterCloseFails() {
+        // Given
+        CountingRewardCentral rewardCentral = new CountingRewardCentral();
+        RewardPointsCoalescer coalescer = new RewardPointsCoalescer(rewardCentral, 4, Duration.ofMillis(1));
+        coalescer.close();
+
+        // When
+        CompletableFuture<Integer> result = coalescer.getRewardPoints(UUID.randomUUID(), UUID.randomUUID());
+
+        // Then
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(0, rewardCentral.calls.get());
+    }
+
+    /**
+     * Test close
+     * Given: a coalescer with a lookup waiting in its 10 s window
+     * When: the coalescer is closed
+     * Then: the lookup fails, and no lookup is left pending
+     */
+    @Test
+    public void closeFailsAndForgetsPendingLookups() {
+        // Given
+        CountingRewardCentral rewardCentral = new CountingRewardCentral();
+        RewardPointsCoalescer coalescer = new RewardPointsCoalescer(rewardCentral, 4, Duration.ofSeconds(10));
+        CompletableFuture<Integer> result = coalescer.getRewardPoints(UUID.randomUUID(), UUID.randomUUID());
+
+        // When
+        coalescer.close();
+
+        // Then
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(0, coalescer.getPendingCount());
+        assertEquals(0, rewardCentral.calls.get());
+    }
+
+    /**
+     * Test getRewardPoints with a full dispatch executor
+     * Given: a coalescer whose aborting dispatch executor has its thread and queue slot taken
+     * When: a lookup is requested
+     * Then: the lookup fails with the rejection, and RewardCentral is not called
+     */
+    @Test
+    public void lookupRejectedByDispatchExecutorFails() {
+        // Given
+        CountingRewardCentral rewardCentral = new CountingRewardCentral();
+        ThreadPoolExecutor dispatchExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.AbortPolicy());
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; i++) {
+            dispatchExecutor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        RewardPointsCoalescer coalescer = new RewardPointsCoalescer(rewardCentral, 4, Duration.ofMillis(1),
+                dispatchExecutor);
+
+        // When
+        CompletableFuture<Integer> result = coalescer.getRewardPoints(UUID.randomUUID(), UUID.randomUUID());
+
+        // Then
+        CompletionException exception = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        assertEquals(0, rewardCentral.calls.get());
+        assertEquals(0, coalescer.getPendingCount());
+        release.countDown();
+        coalescer.close();
+        dispatchExecutor.shutdown();
+    }
+
+}
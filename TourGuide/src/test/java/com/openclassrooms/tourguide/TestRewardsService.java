@@ -1,11 +1,18 @@
 package com.openclassrooms.tourguide;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.Duration;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 
@@ -13,7 +20,10 @@ import gpsUtil.GpsUtil;
 import gpsUtil.location.Attraction;
 import gpsUtil.location.VisitedLocation;
 import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.configuration.TourGuideMetrics;
 import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardPointsCache;
 import com.openclassrooms.tourguide.service.RewardsService;
 import com.openclassrooms.tourguide.service.TourGuideService;
 import com.openclassrooms.tourguide.user.User;
@@ -34,7 +44,8 @@ public class TestRewardsService {
         user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
         tourGuideService.trackUserLocation(user);
         List<UserReward> userRewards = user.getUserRewards();
-        tourGuideService.tracker.stopTracking();
+        tourGuideService.shutdown();
+        rewardsService.shutdown();
         assertTrue(userRewards.size() == 1);
     }
 
@@ -44,6 +55,7 @@ public class TestRewardsService {
         RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
         Attraction attraction = gpsUtil.getAttractions().get(0);
         assertTrue(rewardsService.isWithinAttractionProximity(attraction, attraction));
+        rewardsService.shutdown();
     }
 
     @Test
@@ -57,9 +69,68 @@ public class TestRewardsService {
         
         rewardsService.calculateRewards(tourGuideService.getAllUsers().get(0));
         List<UserReward> userRewards = tourGuideService.getUserRewards(tourGuideService.getAllUsers().get(0));
-        tourGuideService.tracker.stopTracking();
+        tourGuideService.shutdown();
+        rewardsService.shutdown();
 
         assertEquals(gpsUtil.getAttractions().size(), userRewards.size());
     }
 
+    /**
+     * Test calculateRewards incremental passes
+     * Given: a user already rewarded for the first attraction
+     * When: a location on a second attraction is added and calculateRewards is called again
+     * Then: only the new location is evaluated and the second reward is added
+     */
+    @Test
+    public void calculateRewardsOnlyOnNewLocations() {
+        // Given
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        List<Attraction> attractions = gpsUtil.getAttractions();
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(0), new Date()));
+        rewardsService.calculateRewards(user);
+        assertEquals(1, user.getUserRewards().size());
+
+        // When
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attractions.get(1), new Date()));
+        rewardsService.calculateRewards(user);
+        rewardsService.calculateRewards(user);
+
+        // Then
+        assertTrue(user.pollNewVisitedLocations().isEmpty());
+        assertEquals(2, user.getUserRewards().size());
+        rewardsService.shutdown();
+    }
+
+    /**
+     * Test a failed reward points lookup
+     * Given: a user on an attraction, and a lookup failing on its first call
+     * When: calculateRewards fails, then is called again
+     * Then: the location is evaluated again and the reward is added
+     */
+    @Test
+    public void failedLookupIsRetriedOnNextPass() {
+        // Given
+        GpsUtil gpsUtil = new GpsUtil();
+        AtomicInteger calls = new AtomicInteger();
+        RewardPointsCache cache = new RewardPointsCache((attractionId, userId) -> calls.getAndIncrement() == 0
+                ? CompletableFuture.failedFuture(new IllegalStateException("RewardCentral unavailable"))
+                : CompletableFuture.completedFuture(42), 100, Duration.ofMinutes(1));
+        ExecutorService rewardsExecutor = Executors.newSingleThreadExecutor();
+        RewardsService rewardsService = new RewardsService(new AttractionCatalog(gpsUtil), new RewardCentral(), cache,
+                rewardsExecutor, new TourGuideMetrics());
+        Attraction attraction = rewardsService.getAttractionCatalog().getAttractions().get(0);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+
+        // When
+        assertThrows(CompletionException.class, () -> rewardsService.calculateRewards(user));
+        rewardsService.calculateRewards(user);
+        rewardsExecutor.shutdown();
+
+        // Then
+        assertEquals(1, user.getUserRewards().size());
+        assertEquals(42, user.getRewardPointsTotal());
+    }
 }
@@ -0,0 +1,86 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.configuration.TourGuideExecutors;
+import com.openclassrooms.tourguide.configuration.TourGuideProperties;
+
+public class TestTourGuideExecutors {
+
+    /**
+     * Test the caller-runs policy
+     * Given: a tracking pool of one thread and a queue of one task, both busy
+     * When: a third task is submitted
+     * Then: the task runs on the submitting thread
+     */
+    @Test
+    public void fullPoolRunsTaskOnCaller() throws InterruptedException {
+        // Given
+        TourGuideProperties properties = new TourGuideProperties();
+        properties.getExecutors().getTracking().setPoolSize(1);
+        properties.getExecutors().getTracking().setQueueCapacity(1);
+        TourGuideExecutors executors = new TourGuideExecutors(properties);
+        ExecutorService tracking = executors.get(TourGuideExecutors.Workload.TRACKING);
+        CountDownLatch release = new CountDownLatch(1);
+        tracking.execute(() -> awaitQuietly(release));
+        tracking.execute(() -> awaitQuietly(release));
+
+        // When
+        Thread[] runner = new Thread[1];
+        tracking.execute(() -> runner[0] = Thread.currentThread());
+        release.countDown();
+        executors.close();
+
+        // Then
+        assertEquals(Thread.currentThread(), runner[0]);
+    }
+
+    /**
+     * Test close
+     * Given: a task running on the rewards pool
+     * When: the executors are closed
+     * Then: the task is drained before close returns, and new tasks are rejected
+     */
+    @Test
+    public void closeDrainsRunningTasks() {
+        // Given
+        TourGuideExecutors executors = new TourGuideExecutors();
+        ExecutorService rewards = executors.get(TourGuideExecutors.Workload.REWARDS);
+        AtomicBoolean done = new AtomicBoolean();
+        rewards.execute(() -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(200);
+                done.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // When
+        executors.close();
+
+        // Then
+        assertTrue(done.get());
+        assertThrows(RejectedExecutionException.class, () -> rewards.execute(() -> {
+        }));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import gpsUtil.GpsUtil;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.attraction.AttractionCatalog;
+import com.openclassrooms.tourguide.configuration.ClientLimiters;
+import com.openclassrooms.tourguide.configuration.TourGuideExecutors;
+import com.openclassrooms.tourguide.configuration.TourGuideMetrics;
+import com.openclassrooms.tourguide.configuration.TourGuideProperties;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardPointsCache;
+import com.openclassrooms.tourguide.service.RewardPointsCoalescer;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestTourGuideMetrics {
+
+    private static Timer timer(MeterRegistry registry, TourGuideMetrics.Operation operation, String outcome) {
+        return registry.get(TourGuideMetrics.DURATION)
+                .tag("operation", operation.getTagValue())
+                .tag("outcome", outcome)
+                .timer();
+    }
+
+    private static double inFlight(MeterRegistry registry, TourGuideMetrics.Operation operation) {
+        return registry.get(TourGuideMetrics.IN_FLIGHT).tag("operation", operation.getTagValue()).gauge().value();
+    }
+
+    /**
+     * Test record
+     * Given: a TourGuideMetrics on a simple registry
+     * When: a call succeeds and another one throws
+     * Then: each call is counted by the timer of its outcome, and nothing is left in flight
+     */
+    @Test
+    public void recordCountsEachOutcome() {
+        // Given
+        MeterRegistry registry = new SimpleMeterRegistry();
+        TourGuideMetrics metrics = new TourGuideMetrics(registry);
+        TourGuideMetrics.Operation operation = TourGuideMetrics.Operation.GET_NEAR_BY_ATTRACTIONS;
+
+        // When
+        int result = metrics.record(operation, () -> 42);
+        assertThrows(IllegalStateException.class, () -> metrics.record(operation, () -> {
+            throw new IllegalStateException("failed");
+        }));
+
+        // Then
+        assertEquals(42, result);
+        assertEquals(1, timer(registry, operation, "success").count());
+        assertEquals(1, timer(registry, operation, "error").count());
+        assertEquals(0, inFlight(registry, operation));
+    }
+
+    /**
+     * Test recordAsync
+     * Given: a TourGuideMetrics on a simple registry
+     * When: an asynchronous call is started, then its future is completed
+     * Then: the call is in flight until the future completes, and is then timed
+     */
+    @Test
+    public void recordAsyncTimesUntilCompletion() {
+        // Given
+        MeterRegistry registry = new SimpleMeterRegistry();
+        TourGuideMetrics metrics = new TourGuideMetrics(registry);
+        TourGuideMetrics.Operation operation = TourGuideMetrics.Operation.GET_TRIP_DEALS;
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        // When
+        CompletableFuture<String> recorded = metrics.recordAsync(operation, () -> pending);
+        double inFlightBeforeCompletion = inFlight(registry, operation);
+        pending.complete("deals");
+
+        // Then
+        assertEquals("deals", recorded.join());
+        assertEquals(1, inFlightBeforeCompletion);
+        assertEquals(0, inFlight(registry, operation));
+        assertEquals(1, timer(registry, operation, "success").count());
+    }
+
+    /**
+     * Test the instrumentation of the services
+     * Given: a TourGuideService and a RewardsService sharing a TourGuideMetrics, and executors bound to the registry
+     * When: the location of a user is tracked
+     * Then: trackUserLocation and calculateRewards are timed, and the tracker and pool meters are published
+     */
+    @Test
+    public void servicesPublishTheirMeters() {
+        // Given
+        MeterRegistry registry = new SimpleMeterRegistry();
+        TourGuideMetrics metrics = new TourGuideMetrics(registry);
+        TourGuideProperties properties = new TourGuideProperties();
+        TourGuideExecutors executors = new TourGuideExecutors(properties);
+        executors.bindTo(registry);
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardPointsCoalescer coalescer = new RewardPointsCoalescer(new RewardCentral());
+        RewardsService rewardsService = new RewardsService(new AttractionCatalog(gpsUtil), new RewardCentral(),
+                new RewardPointsCache(coalescer), executors.get(TourGuideExecutors.Workload.REWARDS), metrics);
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, executors, properties,
+                metrics, new ClientLimiters(properties));
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+        // When
+        tourGuideService.trackUserLocation(user);
+        tourGuideService.shutdown();
+        coalescer.close();
+        executors.close();
+
+        // Then
+        assertEquals(1, timer(registry, TourGuideMetrics.Operation.TRACK_USER_LOCATION, "success").count());
+        assertEquals(1, timer(registry, TourGuideMetrics.Operation.CALCULATE_REWARDS, "success").count());
+        assertEquals(0, registry.get("executor.queued").tag("name", "tracking").gauge().value());
+        assertEquals(0, registry.get("tourguide.executor.saturation").tag("name", "tracking").gauge().value());
+        assertEquals(0, registry.get("tourguide.pipeline.queue.size").gauge().value());
+        assertEquals(0, registry.get("tourguide.tracker.overruns").functionCounter().count());
+        assertEquals(0, registry.get("tourguide.tracker.pass.duration").timer().count());
+    }
+}
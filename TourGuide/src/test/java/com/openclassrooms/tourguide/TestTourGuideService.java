@@ -4,8 +4,16 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import com.openclassrooms.tourguide.configuration.ClientLimiters;
+import com.openclassrooms.tourguide.configuration.TourGuideExecutors;
+import com.openclassrooms.tourguide.configuration.TourGuideMetrics;
+import com.openclassrooms.tourguide.configuration.TourGuideProperties;
 import com.openclassrooms.tourguide.dto.NearByAttractionsDto;
 import org.junit.jupiter.api.Test;
 
@@ -28,7 +36,8 @@ public class TestTourGuideService {
 
         User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
         VisitedLocation visitedLocation = tourGuideService.trackUserLocation(user);
-        tourGuideService.tracker.stopTracking();
+        tourGuideService.shutdown();
+        rewardsService.shutdown();
         assertTrue(visitedLocation.userId.equals(user.getUserId()));
     }
 
@@ -48,7 +57,8 @@ public class TestTourGuideService {
         User retrivedUser = tourGuideService.getUser(user.getUserName());
         User retrivedUser2 = tourGuideService.getUser(user2.getUserName());
 
-        tourGuideService.tracker.stopTracking();
+        tourGuideService.shutdown();
+        rewardsService.shutdown();
 
         assertEquals(user, retrivedUser);
         assertEquals(user2, retrivedUser2);
@@ -69,7 +79,8 @@ public class TestTourGuideService {
 
         List<User> allUsers = tourGuideService.getAllUsers();
 
-        tourGuideService.tracker.stopTracking();
+        tourGuideService.shutdown();
+        rewardsService.shutdown();
 
         assertTrue(allUsers.contains(user));
         assertTrue(allUsers.contains(user2));
@@ -85,7 +96,8 @@ public class TestTourGuideService {
         User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
         VisitedLocation visitedLocation = tourGuideService.trackUserLocation(user);
 
-        tourGuideService.tracker.stopTracking();
+        tourGuideService.shutdown();
+        rewardsService.shutdown();
 
         assertEquals(user.getUserId(), visitedLocation.userId);
     }
@@ -110,12 +122,94 @@ public class TestTourGuideService {
 
         // When
         List<NearByAttractionsDto> attractions = tourGuideService.getNearByAttractions(visitedLocation);
-        tourGuideService.tracker.stopTracking();
+        tourGuideService.shutdown();
+        rewardsService.shutdown();
 
         // Then
         assertEquals(TourGuideService.NB_CLOSEST_ATTRACTIONS, attractions.size());
     }
 
+    /**
+     * Test trackUsersLocation on virtual threads
+     * Given: a TourGuideService running the tracking on virtual threads
+     * When: trackUsersLocation is called
+     * Then: every user gets a new visited location
+     */
+    @Test
+    public void trackUsersOnVirtualThreads() {
+        // Given
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(10);
+        TourGuideProperties properties = new TourGuideProperties();
+        properties.getExecution().setVirtualThreads(true);
+        properties.getLimits().getGpsUtil().setMinLimit(1);
+        properties.getLimits().getGpsUtil().setInitialLimit(5);
+        properties.getLimits().getGpsUtil().setMaxLimit(5);
+        TourGuideExecutors executors = new TourGuideExecutors(properties);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, executors, properties,
+                new TourGuideMetrics(), new ClientLimiters(properties));
+        List<User> users = tourGuideService.getAllUsers();
+
+        // When
+        Map<String, VisitedLocation> visitedLocations = tourGuideService.trackUsersLocation(users);
+        tourGuideService.shutdown();
+        executors.close();
+        rewardsService.shutdown();
+
+        // Then
+        assertEquals(users.size(), visitedLocations.size());
+        users.forEach(user -> assertEquals(user.getUserId(), visitedLocations.get(user.getUserName()).userId));
+    }
+
+    /**
+     * Test the streaming trackUsersLocation
+     * Given: 20 users and at most 3 users tracked at once
+     * When: trackUsersLocation is called with a sink
+     * Then: the sink receives every user, and no more than 3 users are tracked concurrently
+     */
+    @Test
+    public void trackUsersLocationStreamsToSink() {
+        // Given
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        GpsUtil gpsUtil = new GpsUtil() {
+            @Override
+            public VisitedLocation getUserLocation(UUID userId) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    return super.getUserLocation(userId);
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        };
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(0);
+        TourGuideProperties properties = new TourGuideProperties();
+        properties.getTracking().setMaxInFlight(3);
+        TourGuideExecutors executors = new TourGuideExecutors(properties);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, executors, properties,
+                new TourGuideMetrics(), new ClientLimiters(properties));
+        tourGuideService.tracker.stopTracking();
+        List<User> users = IntStream.range(0, 20)
+                .mapToObj(i -> new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com"))
+                .toList();
+        Map<String, VisitedLocation> received = new ConcurrentHashMap<>();
+
+        // When
+        tourGuideService.trackUsersLocation(users,
+                (user, visitedLocation) -> received.put(user.getUserName(), visitedLocation));
+
+        tourGuideService.shutdown();
+        executors.close();
+        rewardsService.shutdown();
+
+        // Then
+        assertEquals(users.size(), received.size());
+        assertTrue(maxRunning.get() <= 3);
+    }
+
     public void getTripDeals() {
         GpsUtil gpsUtil = new GpsUtil();
         RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
@@ -126,7 +220,8 @@ public class TestTourGuideService {
 
         List<Provider> providers = tourGuideService.getTripDeals(user);
 
-        tourGuideService.tracker.stopTracking();
+        tourGuideService.shutdown();
+        rewardsService.shutdown();
 
         assertEquals(10, providers.size());
     }
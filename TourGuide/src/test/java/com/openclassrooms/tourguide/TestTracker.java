@@ -0,0 +1,61 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.configuration.ClientLimiters;
+import com.openclassrooms.tourguide.configuration.TourGuideExecutors;
+import com.openclassrooms.tourguide.configuration.TourGuideMetrics;
+import com.openclassrooms.tourguide.configuration.TourGuideProperties;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.tracker.TrackerMetrics;
+
+public class TestTracker {
+
+    /**
+     * Test the sharded schedule
+     * Given: 10 users, a 1 second polling interval and 5 shards
+     * When: the tracker completes a pass
+     * Then: every user has been tracked once in the pass and the metrics are recorded
+     */
+    @Test
+    public void trackerSpreadsShardsAcrossInterval() throws InterruptedException {
+        // Given
+        GpsUtil gpsUtil = new GpsUtil();
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        InternalTestHelper.setInternalUserNumber(10);
+        TourGuideProperties properties = new TourGuideProperties();
+        properties.getTracking().setPollingInterval(Duration.ofSeconds(1));
+        properties.getTracking().setShards(5);
+
+        // When
+        TourGuideExecutors executors = new TourGuideExecutors(properties);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, executors, properties,
+                new TourGuideMetrics(), new ClientLimiters(properties));
+        TrackerMetrics metrics = tourGuideService.tracker.getMetrics();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (metrics.getPasses() == 0 && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        tourGuideService.shutdown();
+        executors.close();
+        rewardsService.shutdown();
+
+        // Then
+        assertTrue(metrics.getPasses() >= 1);
+        assertTrue(metrics.getTrackedUsers() >= 10);
+        assertTrue(metrics.getLastPassDurationMillis() >= 600);
+        tourGuideService.getAllUsers().forEach(user -> assertTrue(user.getVisitedLocations().size() >= 4));
+        assertEquals(10, tourGuideService.getAllUsers().size());
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import tripPricer.Provider;
+import tripPricer.TripPricer;
+import com.openclassrooms.tourguide.service.TripDealsCache;
+import com.openclassrooms.tourguide.user.User;
+
+public class TestTripDealsCache {
+
+    /**
+     * TripPricer stub returning one provider whose price is the number of calls
+     */
+    private static class CountingTripPricer extends TripPricer {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public List<Provider> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay,
+                                       int rewardsPoints) {
+            return List.of(new Provider(UUID.randomUUID(), "provider", calls.incrementAndGet()));
+        }
+    }
+
+    /**
+     * Test getTripDeals
+     * Given: a cache pricing on the calling thread
+     * When: the deals are requested twice, then after a change of preferences, then of reward points
+     * Then: the second request is served from the cache, each change prices the deals again
+     */
+    @Test
+    public void dealsArePricedAgainOnlyWhenTheKeyChanges() {
+        // Given
+        CountingTripPricer tripPricer = new CountingTripPricer();
+        Executor direct = Runnable::run;
+        TripDealsCache cache = new TripDealsCache(tripPricer, "key", direct, Duration.ofHours(1));
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+        // When
+        List<Provider> first = cache.getTripDeals(user, 0).join();
+        List<Provider> cached = cache.getTripDeals(user, 0).join();
+        user.getUserPreferences().setNumberOfChildren(2);
+        List<Provider> afterPreferences = cache.getTripDeals(user, 0).join();
+        List<Provider> afterRewards = cache.getTripDeals(user, 100).join();
+
+        // Then
+        assertSame(first, cached);
+        assertEquals(3, tripPricer.calls.get());
+        assertNotEquals(first, afterPreferences);
+        assertNotEquals(afterPreferences, afterRewards);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    /**
+     * Test the background refresh
+     * Given: cached deals older than the refresh age, on a manual clock
+     * When: the deals are requested twice
+     * Then: the first request gets the old deals and triggers a pricing, the second one gets the new deals
+     */
+    @Test
+    public void oldDealsAreServedWhileRefreshing() {
+        // Given
+        CountingTripPricer tripPricer = new CountingTripPricer();
+        AtomicLong clock = new AtomicLong();
+        TripDealsCache cache = new TripDealsCache(tripPricer, "key", Runnable::run, Duration.ofMinutes(10), clock::get);
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        List<Provider> first = cache.getTripDeals(user, 0).join();
+        clock.addAndGet(Duration.ofMinutes(11).toNanos());
+
+        // When
+        List<Provider> stale = cache.getTripDeals(user, 0).join();
+        List<Provider> refreshed = cache.getTripDeals(user, 0).join();
+
+        // Then
+        assertSame(first, stale);
+        assertEquals(2.0, refreshed.get(0).price);
+        assertEquals(2, tripPricer.calls.get());
+    }
+
+}
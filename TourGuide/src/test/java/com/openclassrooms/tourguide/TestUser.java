@@ -0,0 +1,138 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+import com.openclassrooms.tourguide.user.VisitedLocationHistory;
+
+public class TestUser {
+
+    /**
+     * Test addUserReward
+     * Given: a user and the attractions, loaded twice so that attraction ids differ
+     * When: rewards for the same attractions are added concurrently
+     * Then: the user has exactly one reward per attraction
+     */
+    @Test
+    public void addUserRewardConcurrentlyKeepsOneRewardPerAttraction() {
+        // Given
+        GpsUtil gpsUtil = new GpsUtil();
+        List<Attraction> attractions = gpsUtil.getAttractions();
+        List<Attraction> reloadedAttractions = gpsUtil.getAttractions();
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+
+        // When
+        CompletableFuture.allOf(IntStream.range(0, 8)
+                .mapToObj(i -> CompletableFuture.runAsync(() -> {
+                    List<Attraction> source = i % 2 == 0 ? attractions : reloadedAttractions;
+                    source.forEach(attraction -> user.addUserReward(new UserReward(
+                            new VisitedLocation(user.getUserId(), attraction, new Date()), attraction, i)));
+                }, executorService))
+                .toArray(CompletableFuture[]::new)).join();
+        executorService.shutdown();
+
+        // Then
+        assertEquals(attractions.size(), user.getUserRewards().size());
+        assertTrue(user.hasRewardForAttraction(reloadedAttractions.get(0)));
+    }
+
+    /**
+     * Test the reward points aggregates
+     * Given: a user and the attractions
+     * When: rewards with various points are added concurrently, some of them twice
+     * Then: the total and the points by state match the sums computed from the rewards list,
+     *       which cannot be modified around addUserReward
+     */
+    @Test
+    public void rewardPointsAggregatesMatchRewards() {
+        // Given
+        List<Attraction> attractions = new GpsUtil().getAttractions();
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+        // When
+        IntStream.range(0, attractions.size() * 2).parallel().forEach(i -> {
+            Attraction attraction = attractions.get(i % attractions.size());
+            user.addUserReward(new UserReward(new VisitedLocation(user.getUserId(), attraction, new Date()),
+                    attraction, i * 7));
+        });
+
+        // Then
+        List<UserReward> rewards = user.getUserRewards();
+        assertEquals(attractions.size(), rewards.size());
+        assertEquals(rewards.stream().mapToInt(UserReward::getRewardPoints).sum(), user.getRewardPointsTotal());
+        assertEquals(rewards.stream().collect(Collectors.groupingBy(reward -> reward.attraction.state,
+                        Collectors.summingInt(UserReward::getRewardPoints))),
+                user.getRewardPointsByState());
+        assertThrows(UnsupportedOperationException.class, () -> rewards.add(rewards.get(0)));
+    }
+
+    /**
+     * Test hasRewardForAttraction
+     * Given: a user without rewards
+     * When: hasRewardForAttraction is called
+     * Then: false is returned
+     */
+    @Test
+    public void hasRewardForAttractionWithoutRewards() {
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        assertFalse(user.hasRewardForAttraction(new GpsUtil().getAttractions().get(0)));
+    }
+
+    /**
+     * Test the bounded visited locations history
+     * Given: a user keeping 10 recent locations and 5 archived ones, one archived out of 3
+     * When: 100 locations are added
+     * Then: 15 locations are kept, the recent ones in full, the older ones down-sampled
+     * Locations are stored column by column, so they are compared by coordinates and time.
+     */
+    @Test
+    public void visitedLocationsHistoryIsBounded() {
+        // Given
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com",
+                new VisitedLocationHistory.Retention(10, 5, 3));
+        List<VisitedLocation> added = IntStream.range(0, 100)
+                .mapToObj(i -> new VisitedLocation(user.getUserId(), new Location(i, i), new Date()))
+                .toList();
+
+        // When
+        added.forEach(user::addToVisitedLocations);
+
+        // Then
+        List<VisitedLocation> visitedLocations = user.getVisitedLocations();
+        assertEquals(15, visitedLocations.size());
+        assertEquals(describe(added.subList(90, 100)), describe(visitedLocations.subList(5, 15)));
+        assertEquals(describe(List.of(added.get(75), added.get(78), added.get(81), added.get(84), added.get(87))),
+                describe(visitedLocations.subList(0, 5)));
+        assertEquals(describe(List.of(added.get(99))), describe(List.of(user.getLastVisitedLocation())));
+        assertEquals(user.getUserId(), user.getLastVisitedLocation().userId);
+        assertEquals(describe(added.subList(90, 100)), describe(user.pollNewVisitedLocations()));
+        assertTrue(user.pollNewVisitedLocations().isEmpty());
+    }
+
+    private static List<String> describe(List<VisitedLocation> visitedLocations) {
+        return visitedLocations.stream()
+                .map(v -> v.location.latitude + "," + v.location.longitude + "@" + v.timeVisited.getTime())
+                .toList();
+    }
+
+}
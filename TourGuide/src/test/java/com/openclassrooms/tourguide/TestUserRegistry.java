@@ -0,0 +1,160 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserRegistry;
+
+public class TestUserRegistry {
+
+    /**
+     * Test add
+     * Given: an empty registry
+     * When: 1000 users are added concurrently, each one twice under different instances
+     * Then: each userName is registered once, and every user is found by name and by id
+     */
+    @Test
+    public void concurrentAddKeepsOneUserPerName() {
+        // Given
+        UserRegistry registry = new UserRegistry();
+
+        // When
+        IntStream.range(0, 2000).parallel().forEach(i -> {
+            String userName = "user" + (i % 1000);
+            registry.add(new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com"));
+        });
+
+        // Then
+        List<User> users = registry.snapshot();
+        assertEquals(1000, users.size());
+        assertEquals(1000, new HashSet<>(users).size());
+        users.forEach(user -> {
+            assertSame(user, registry.getByName(user.getUserName()));
+            assertSame(user, registry.getById(user.getUserId()));
+        });
+    }
+
+    /**
+     * Test snapshot
+     * Given: a snapshot of a registry of one user
+     * When: a user with a new name and a user with a taken name are added
+     * Then: the snapshot is unchanged, the new snapshot holds the two distinct users
+     */
+    @Test
+    public void snapshotIsStable() {
+        // Given
+        UserRegistry registry = new UserRegistry();
+        User jon = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        registry.add(jon);
+        List<User> snapshot = registry.snapshot();
+
+        // When
+        registry.add(new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com"));
+        boolean added = registry.add(new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com"));
+
+        // Then
+        assertFalse(added);
+        assertEquals(List.of(jon), snapshot);
+        assertEquals(2, registry.snapshot().size());
+    }
+
+    /**
+     * Test addAll
+     * Given: a registry of one user
+     * When: three users are added in bulk, one of them with a taken name
+     * Then: the two new users are added after the first one
+     */
+    @Test
+    public void addAllSkipsTakenNames() {
+        // Given
+        UserRegistry registry = new UserRegistry();
+        User jon = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        registry.add(jon);
+        User jon2 = new User(UUID.randomUUID(), "jon2", "000", "jon2@tourGuide.com");
+        User jon3 = new User(UUID.randomUUID(), "jon3", "000", "jon3@tourGuide.com");
+        User otherJon = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+        // When
+        int added = registry.addAll(List.of(jon2, otherJon, jon3));
+
+        // Then
+        assertEquals(2, added);
+        assertEquals(List.of(jon, jon2, jon3), registry.snapshot());
+        assertSame(jon3, registry.getById(jon3.getUserId()));
+    }
+
+    /**
+     * Test add
+     * Given: a registry of one user
+     * When: a user with a new name but the same userId is added
+     * Then: the user is rejected, the first one staying registered under its id
+     */
+    @Test
+    public void addRejectsTakenIds() {
+        // Given
+        UserRegistry registry = new UserRegistry();
+        User jon = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        registry.add(jon);
+
+        // When
+        boolean added = registry.add(new User(jon.getUserId(), "jon2", "000", "jon2@tourGuide.com"));
+        int addedInBulk = registry.addAll(List.of(new User(jon.getUserId(), "jon3", "000", "jon3@tourGuide.com")));
+
+        // Then
+        assertFalse(added);
+        assertEquals(0, addedInBulk);
+        assertSame(jon, registry.getById(jon.getUserId()));
+        assertNull(registry.getByName("jon2"));
+        assertEquals(List.of(jon), registry.snapshot());
+    }
+
+    /**
+     * Test add
+     * Given: an empty registry
+     * When: 10000 users are added one after the other while another thread looks them up by name
+     * Then: a user found by name is always in the snapshot taken afterwards
+     */
+    @Test
+    public void userFoundByNameIsInSnapshot() throws InterruptedException {
+        // Given
+        UserRegistry registry = new UserRegistry();
+        int count = 10_000;
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicBoolean missed = new AtomicBoolean();
+
+        // When
+        Thread reader = new Thread(() -> {
+            while (!done.get()) {
+                for (int i = 0; i < count; i += 97) {
+                    if (registry.getByName("user" + i) != null && registry.snapshot().size() <= i) {
+                        missed.set(true);
+                    }
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < count; i++) {
+            registry.add(new User(UUID.randomUUID(), "user" + i, "000", "user" + i + "@tourGuide.com"));
+        }
+        done.set(true);
+        reader.join();
+
+        // Then
+        assertFalse(missed.get());
+        assertEquals(count, registry.size());
+        assertTrue(registry.snapshot().stream().allMatch(user -> registry.getById(user.getUserId()) == user));
+    }
+
+}
@@ -0,0 +1,281 @@
+package com.openclassrooms.tourguide;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import gpsUtil.GpsUtil;
+import gpsUtil.location.Attraction;
+import gpsUtil.location.Location;
+import gpsUtil.location.VisitedLocation;
+import rewardCentral.RewardCentral;
+import com.openclassrooms.tourguide.configuration.ClientLimiters;
+import com.openclassrooms.tourguide.configuration.TourGuideExecutors;
+import com.openclassrooms.tourguide.configuration.TourGuideMetrics;
+import com.openclassrooms.tourguide.configuration.TourGuideProperties;
+import com.openclassrooms.tourguide.helper.InternalTestHelper;
+import com.openclassrooms.tourguide.service.RewardLeaderboard;
+import com.openclassrooms.tourguide.service.RewardsService;
+import com.openclassrooms.tourguide.service.TourGuideService;
+import com.openclassrooms.tourguide.store.UserStore;
+import com.openclassrooms.tourguide.user.User;
+import com.openclassrooms.tourguide.user.UserReward;
+import com.openclassrooms.tourguide.user.VisitedLocationHistory;
+
+public class TestUserStore {
+    private static final VisitedLocationHistory.Retention RETENTION = new VisitedLocationHistory.Retention(3, 2, 1);
+    private static final Attraction ATTRACTION = new Attraction("Disneyland", "Anaheim", "CA", 33.817595D,
+            -117.922008D);
+
+    private static User user(String userName, int locations) {
+        User user = new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com", RETENTION);
+        for (int i = 0; i < locations; i++) {
+            user.addToVisitedLocations(i, -i, i * 1000L);
+        }
+        return user;
+    }
+
+    private static UserReward reward(User user, Attraction attraction, int rewardPoints) {
+        return new UserReward(new VisitedLocation(user.getUserId(), new Location(1, 2), new Date(3000)), attraction,
+                rewardPoints);
+    }
+
+    private static User find(List<UserStore.RestoredUser> restored, User user) {
+        return restored.stream()
+                .map(UserStore.RestoredUser::user)
+                .filter(candidate -> candidate.getUserId().equals(user.getUserId()))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Test the restore of the snapshot and of the log written after it
+     * Given: a snapshot of a user with preferences, an archived history and a reward
+     * When: a location, a reward and a user are logged after the snapshot, then the store is loaded again
+     * Then: the users are restored with their preferences, locations, poll mark and rewards,
+     *       the rewards being bound to the current attractions by name
+     */
+    @Test
+    public void restoresSnapshotThenLog(@TempDir Path directory) {
+        // Given
+        UserStore store = new UserStore(directory, RETENTION);
+        assertTrue(store.load(Map.of()).isEmpty());
+        User user = user("jon", 6);
+        user.getUserPreferences().setTripDuration(7);
+        user.getUserPreferences().setNumberOfChildren(2);
+        user.pollNewLocationColumns();
+        user.addUserReward(reward(user, ATTRACTION, 100));
+        store.snapshot(List.of(user));
+
+        // When
+        VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(10, 20), new Date(9000));
+        store.appendLocation(user, user.addToVisitedLocations(visitedLocation), visitedLocation);
+        Attraction other = new Attraction("Jackson Hole", "Jackson Hole", "WY", 43.582767D, -110.821999D);
+        UserReward otherReward = reward(user, other, 50);
+        user.addUserReward(otherReward);
+        store.appendReward(user, otherReward);
+        User added = user("jon2", 1);
+        store.appendUser(added);
+        store.close();
+        Attraction reloaded = new Attraction(ATTRACTION.attractionName, ATTRACTION.city, ATTRACTION.state,
+                ATTRACTION.latitude, ATTRACTION.longitude);
+        List<UserStore.RestoredUser> restored = new UserStore(directory, RETENTION)
+                .load(Map.of(reloaded.attractionName, reloaded));
+
+        // Then
+        assertEquals(2, restored.size());
+        User restoredUser = find(restored, user);
+        assertNotNull(restoredUser);
+        assertEquals("jon@tourGuide.com", restoredUser.getEmailAddress());
+        assertEquals(7, restoredUser.getUserPreferences().getTripDuration());
+        assertEquals(2, restoredUser.getUserPreferences().getNumberOfChildren());
+        assertEquals(user.getVisitedLocationHistory().getState().appended(),
+                restoredUser.getVisitedLocationHistory().getState().appended());
+        assertEquals(locationTimes(user), locationTimes(restoredUser));
+        // only the location logged after the poll is new
+        assertEquals(1, restoredUser.pollNewLocationColumns().size());
+        List<UserReward> rewards = restored.get(0).rewards();
+        assertEquals(2, rewards.size());
+        assertEquals(reloaded, rewards.get(0).attraction);
+        assertEquals(100, rewards.get(0).getRewardPoints());
+        assertEquals("Jackson Hole", rewards.get(1).attraction.attractionName);
+        assertEquals(1, find(restored, added).getVisitedLocations().size());
+    }
+
+    /**
+     * Test a crash in the middle of a log record
+     * Given: a store with a user and a location logged after it
+     * When: the log loses its last bytes, then the store is loaded again
+     * Then: the user is restored, without the torn location
+     */
+    @Test
+    public void ignoresTornLogRecord(@TempDir Path directory) throws IOException {
+        // Given
+        UserStore store = new UserStore(directory, RETENTION);
+        store.load(Map.of());
+        User user = user("jon", 1);
+        store.appendUser(user);
+        VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(10, 20), new Date(9000));
+        store.appendLocation(user, user.addToVisitedLocations(visitedLocation), visitedLocation);
+        store.close();
+
+        // When
+        Path log;
+        try (Stream<Path> files = Files.list(directory)) {
+            log = files.filter(file -> file.getFileName().toString().endsWith(".log")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        List<UserStore.RestoredUser> restored = new UserStore(directory, RETENTION).load(Map.of());
+
+        // Then
+        assertEquals(1, restored.size());
+        assertEquals(1, restored.get(0).user().getVisitedLocations().size());
+    }
+
+    /**
+     * Test the replay of the logged locations
+     * Given: a logged user without locations
+     * When: its locations 0 and 1 are logged, then location 1 again and location 3 after a missing one
+     * Then: only the locations 0 and 1 are restored, once each
+     */
+    @Test
+    public void replaysLocationsInSequence(@TempDir Path directory) {
+        // Given
+        UserStore store = new UserStore(directory, RETENTION);
+        store.load(Map.of());
+        User user = user("jon", 0);
+        store.appendUser(user);
+
+        // When
+        for (long sequence : new long[]{0, 1, 1, 3}) {
+            store.appendLocation(user, sequence,
+                    new VisitedLocation(user.getUserId(), new Location(sequence, 0), new Date(sequence * 1000)));
+        }
+        store.close();
+        List<UserStore.RestoredUser> restored = new UserStore(directory, RETENTION).load(Map.of());
+
+        // Then
+        User restoredUser = restored.get(0).user();
+        assertEquals(List.of(0L, 1000L), locationTimes(restoredUser));
+        assertEquals(2, restoredUser.getVisitedLocationHistory().getAppendedCount());
+    }
+
+    /**
+     * Test a restart of the TourGuideService with the store enabled
+     * Given: a service with a user tracked and rewarded, then shut down
+     * When: a new service starts on the same store
+     * Then: the user is restored with its locations and rewards, and counted by the leaderboard,
+     *       without tracking it again
+     */
+    @Test
+    public void serviceRestoresUsersAfterRestart(@TempDir Path directory) {
+        // Given
+        GpsUtil gpsUtil = new GpsUtil();
+        TourGuideProperties properties = new TourGuideProperties();
+        properties.getStore().setEnabled(true);
+        properties.getStore().setDirectory(directory.toString());
+        InternalTestHelper.setInternalUserNumber(0);
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        TourGuideExecutors executors = new TourGuideExecutors();
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, executors, properties,
+                new TourGuideMetrics(), new ClientLimiters(properties));
+        tourGuideService.tracker.stopTracking();
+        User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+        tourGuideService.addUser(user);
+        Attraction attraction = rewardsService.getAttractionCatalog().getAttractions().get(0);
+        user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
+        tourGuideService.trackUserLocation(user);
+        tourGuideService.shutdown();
+        rewardsService.shutdown();
+
+        // When
+        RewardsService restartedRewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        RewardLeaderboard leaderboard = new RewardLeaderboard(restartedRewardsService);
+        TourGuideService restarted = new TourGuideService(gpsUtil, restartedRewardsService, executors, properties,
+                new TourGuideMetrics(), new ClientLimiters(properties));
+        restarted.tracker.stopTracking();
+
+        // Then
+        User restoredUser = restarted.getUser("jon");
+        assertNotNull(restoredUser);
+        assertEquals(user.getUserId(), restoredUser.getUserId());
+        assertEquals(2, restoredUser.getVisitedLocations().size());
+        assertEquals(user.getUserRewards().size(), restoredUser.getUserRewards().size());
+        assertTrue(restoredUser.hasRewardForAttraction(attraction));
+        assertEquals(user.getRewardPointsTotal(), leaderboard.getTopUsers(1).get(0).getRewardPoints());
+        restarted.shutdown();
+        executors.close();
+        restartedRewardsService.shutdown();
+    }
+
+    /**
+     * Test a restart of the TourGuideService before its first snapshot
+     * Given: a service with the store enabled, having generated its internal users from a random seed
+     *        and tracked one of them, stopped without a snapshot once its log is flushed
+     * When: a new service starts on the same store
+     * Then: the generated users are restored with their ids, and the tracked user with its new location,
+     *       instead of new users being generated
+     */
+    @Test
+    public void serviceRestoresGeneratedUsersBeforeSnapshot(@TempDir Path directory) throws InterruptedException {
+        // Given
+        GpsUtil gpsUtil = new GpsUtil();
+        TourGuideProperties properties = new TourGuideProperties();
+        properties.getStore().setEnabled(true);
+        properties.getStore().setDirectory(directory.toString());
+        InternalTestHelper.setInternalUserNumber(5);
+        RewardsService rewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        TourGuideExecutors executors = new TourGuideExecutors(properties);
+        TourGuideService tourGuideService = new TourGuideService(gpsUtil, rewardsService, executors, properties,
+                new TourGuideMetrics(), new ClientLimiters(properties));
+        tourGuideService.tracker.stopTracking();
+        List<User> users = tourGuideService.getAllUsers();
+        User tracked = users.get(0);
+        tourGuideService.trackUserLocation(tracked);
+        int trackedLocations = tracked.getVisitedLocations().size();
+        TimeUnit.MILLISECONDS.sleep(UserStore.FLUSH_INTERVAL.toMillis() * 3);
+
+        // When
+        RewardsService restartedRewardsService = new RewardsService(gpsUtil, new RewardCentral());
+        TourGuideExecutors restartedExecutors = new TourGuideExecutors(properties);
+        TourGuideService restarted = new TourGuideService(gpsUtil, restartedRewardsService, restartedExecutors,
+                properties, new TourGuideMetrics(), new ClientLimiters(properties));
+        restarted.tracker.stopTracking();
+
+        // Then
+        assertEquals(5, restarted.getAllUsers().size());
+        for (User user : users) {
+            User restoredUser = restarted.getUser(user.getUserName());
+            assertNotNull(restoredUser);
+            assertEquals(user.getUserId(), restoredUser.getUserId());
+        }
+        assertEquals(trackedLocations, restarted.getUser(tracked.getUserName()).getVisitedLocations().size());
+        restarted.shutdown();
+        restartedExecutors.close();
+        restartedRewardsService.shutdown();
+        tourGuideService.shutdown();
+        executors.close();
+        rewardsService.shutdown();
+    }
+
+    private static List<Long> locationTimes(User user) {
+        return user.getVisitedLocations().stream().map(location -> location.timeVisited.getTime()).toList();
+    }
+}